@@ -1,7 +1,7 @@
 #!/bin/bash
 mvn clean compile assembly:single
 
-for VAR in {1..10}
+for VAR in $(ls src/main/resources/tests | grep _test.json | cut -d_ -f1 | sort -n)
 do
 	echo $'\n==Test '$VAR &&
 	java -jar target/HybridChunkedBlockchainTickSimulation-1.0.0-jar-with-dependencies.jar "tests/${VAR}_test.json" "tests/${VAR}_expected.txt"
@@ -16,9 +16,42 @@ public class AuthBlockchain extends Blockchain {
 	private ArrayDeque<String> writeNodes = new ArrayDeque<>();
 	private ArrayDeque<String> authWriteNodes = new ArrayDeque<>();
 	
+	// permissions by node index, resolved from nodePermissions when needed
+	private SimulatedNetwork network;
+	private int[] indexPermissions = new int[0];
+	
+	public void setNetwork(SimulatedNetwork network) {
+		this.network = network;
+		this.indexPermissions = new int[0];
+	}
+	
 	public boolean hasPermission(String origin, int requiredPermission) {
 		return this.nodePermissions.getOrDefault(origin, 0) >= requiredPermission;
 	}
+	
+	/**
+	 * @param node, index of node (see SimulatedNetwork.getNodeIndex)
+	 * @param requiredPermission
+	 * @return boolean
+	 */
+	public boolean hasPermission(int node, int requiredPermission) {
+		if(node >= this.indexPermissions.length) {
+			this.resolveIndexPermissions();
+		}
+		
+		int permission = node >= 0 && node < this.indexPermissions.length ? this.indexPermissions[node] : 0;
+		
+		return permission >= requiredPermission;
+	}
+	
+	private void resolveIndexPermissions() {
+		int nodes = this.network != null ? this.network.indexedNodes.size() : 0;
+		this.indexPermissions = new int[nodes];
+		
+		for(int a = 0; a < nodes; a++) {
+			this.indexPermissions[a] = this.nodePermissions.getOrDefault(this.network.getNodeId(a), 0);
+		}
+	}
 
 	public boolean isFutureBlock(String origin) {
 		Iterator<String> writeIterator = this.writeNodes.iterator();
@@ -69,15 +102,16 @@ public class AuthBlockchain extends Blockchain {
 	}
 	
 	public void parseBlock(Block block) {
-		String[] auths = block.getPayload().split("\\|\\|");
-		
-		for(String auth: auths) {
+		for(String auth: block.getPayloadParts()) {
 			String[] vals = auth.split(" ");
 			int perm = this.nodePermissions.getOrDefault(vals[0], -1);
 			
 			if(Integer.parseInt(vals[1]) > perm) {
 				this.nodePermissions.put(vals[0], Integer.parseInt(vals[1]));
 				perm = this.nodePermissions.get(vals[0]);
+				
+				// resolved again on next lookup
+				this.indexPermissions = new int[0];
 			}
 
 			if(this.hasPermission(vals[0], AuthBlockchain.WRITE_NODE)) {
@@ -1,18 +1,52 @@
 package simulatedHybridBlockchain;
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Block {
-	protected String payload;
+	// block hash covers the header with Merkle root instead of the whole payload, see Block(boolean)
+	private final boolean merkleHashing;
+	
+	// ordered payload parts (transactions, authorisations), null until decoded from encodedPayload
+	private ArrayList<String> payloadParts;
+	
+	// payload parts joined by "||", null until encoded by getPayload()
+	private String encodedPayload;
+	
 	protected String creator;
 	protected String previous_hash;
 	protected String previous_chunk;
 	protected int height;
 	
+	// memoized getHash(), cleared by every change of the block
+	private Hash256 hash = null;
+	
+	// previous_hash parsed for lookups in Blockchain, null for "INIT"
+	private Hash256 previousHash = null;
+	
+	// header of a block whose payload was dropped, see toHeader()
+	private boolean pruned = false;
+	
+	// memoized hashes of payload parts and Merkle tree over them, cleared with the payload
+	// volatile, as blocks of SimulatedBlockStore are read by nodes executed concurrently
+	private volatile List<Hash256> transactionHashes = null;
+	private volatile MerkleTree merkleTree = null;
+	private volatile Hash256 merkleRoot = null;
+	
 	public Block() {
-		this.payload = null;
+		this(false);
+	}
+	
+	/**
+	 * Lets the block hash cover getHeader(), ie. the Merkle root over transactions instead of the whole payload,
+	 * so that inclusion of a transaction can be proven without the block (see MerkleProof).
+	 * @param merkleHashing
+	 */
+	public Block(boolean merkleHashing) {
+		this.merkleHashing = merkleHashing;
+		this.payloadParts = new ArrayList<>();
+		this.encodedPayload = null;
 		this.creator = null;
 		this.previous_hash = null;
 		this.previous_chunk = null;
@@ -20,44 +54,109 @@ public class Block {
 	}
 
 	public void addPayload(String payload) {
-		if(this.payload == null) {
-			this.payload = payload;
-		} else {
-			this.payload += "||"+payload;
-		}
+		this.decodePayloadParts();
+		this.payloadParts.add(payload);
+		
+		this.encodedPayload = null;
+		this.hash = null;
+		this.clearMerkleTree();
+	}
+	
+	public boolean isMerkleHashing() {
+		return this.merkleHashing;
 	}
 
 	/**
-	 * Calculates SHA-256 hash of the block from this.toString()
-	 * @return String, SHA-256 hash | null
+	 * Calculates SHA-256 hash of the block from this.toString(), or this.getHeader() with Merkle hashing,
+	 * computed once until the block changes
+	 * @return Hash256, SHA-256 hash
 	 */
-	public String getHash() {
-		try {
-			MessageDigest hash = MessageDigest.getInstance("SHA-256");
+	public Hash256 getHash() {
+		if(this.hash == null) {
+			this.hash = Hash256.digest(this.merkleHashing ? this.getHeader() : this.toString());
+		}
+		
+		return this.hash;
+	}
+	
+	/**
+	 * @return String, "height:creator:previous_hash:previous_chunk:merkle_root"
+	 */
+	public String getHeader() {
+		return this.getHeight()+":"+this.getCreator()+":"+this.getPrevious()+":"+this.getPreviousChunk()+":"+this.getMerkleRoot();
+	}
+	
+	/**
+	 * @return List<Hash256>, read-only SHA-256 hashes of payload parts, equal to Transaction.getHash() of transactions
+	 */
+	public List<Hash256> getTransactionHashes() {
+		if(this.transactionHashes == null) {
+			List<Hash256> hashes = new ArrayList<>();
 			
-			String block = this.toString();
-			hash.update(block.getBytes("UTF-8"));
+			for(String part: this.getPayloadParts()) {
+				hashes.add(Hash256.digest(part));
+			}
 			
-			return String.format("%064x", new BigInteger(1, hash.digest()));
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		}		
+			this.transactionHashes = Collections.unmodifiableList(hashes);
+		}
+		
+		return this.transactionHashes;
+	}
+	
+	/**
+	 * @return Hash256, root of Merkle tree over getTransactionHashes() | null if the block has no payload
+	 */
+	public Hash256 getMerkleRoot() {
+		if(this.merkleRoot == null && !this.pruned) {
+			this.merkleRoot = this.getMerkleTree().getRoot();
+		}
+		
+		return this.merkleRoot;
+	}
+	
+	/**
+	 * @param transaction, hash of a payload part
+	 * @return MerkleProof, path to getMerkleRoot() | null if the transaction is not in the block
+	 */
+	public MerkleProof getMerkleProof(Hash256 transaction) {
+		if(this.pruned) {
+			return null;
+		}
 		
-		return null;
+		MerkleTree tree = this.getMerkleTree();
+		int index = tree.indexOf(transaction);
+		
+		return index != -1 ? tree.getProof(index) : null;
+	}
+	
+	private MerkleTree getMerkleTree() {
+		if(this.merkleTree == null) {
+			this.merkleTree = new MerkleTree(this.getTransactionHashes());
+		}
+		
+		return this.merkleTree;
+	}
+	
+	private void clearMerkleTree() {
+		this.transactionHashes = null;
+		this.merkleTree = null;
+		this.merkleRoot = null;
 	}
 
 	public void addPrevious(String hash) {
 		this.previous_hash = hash;
+		this.previousHash = null;
+		this.hash = null;
 	}
 	
 	public void addPreviousChunk(String hash) {
 		this.previous_chunk = hash;
+		this.hash = null;
 	}
 
 	public void setHeight(int i) {
 		this.height = i;
+		this.hash = null;
 	}
 
 	public int getHeight() {
@@ -66,6 +165,7 @@ public class Block {
 
 	public void addCreator(String creator) {
 		this.creator = creator;
+		this.hash = null;
 	}
 	
 	public String getCreator() {
@@ -76,12 +176,91 @@ public class Block {
 		return this.previous_hash;
 	}
 	
+	/**
+	 * @return Hash256, hash of previous block | null if there is none (eg. "INIT")
+	 */
+	public Hash256 getPreviousHash() {
+		if(this.previousHash == null) {
+			this.previousHash = Hash256.fromHex(this.previous_hash);
+		}
+		
+		return this.previousHash;
+	}
+	
 	public String getPreviousChunk() {
 		return this.previous_chunk;
 	}
 	
+	/**
+	 * Payload parts joined by "||", encoded once until the payload changes
+	 * @return String | null if block has no payload
+	 */
 	public String getPayload() {
-		return this.payload;
+		if(this.encodedPayload == null && !this.payloadParts.isEmpty()) {
+			this.encodedPayload = String.join("||", this.payloadParts);
+		}
+		
+		return this.encodedPayload;
+	}
+	
+	/**
+	 * @return List<String>, read-only payload parts in order they were added
+	 */
+	public List<String> getPayloadParts() {
+		this.decodePayloadParts();
+		
+		return Collections.unmodifiableList(this.payloadParts);
+	}
+	
+	private void decodePayloadParts() {
+		if(this.payloadParts != null) {
+			return;
+		}
+		
+		// parts are only assigned when complete, see SimulatedBlockStore
+		ArrayList<String> parts = new ArrayList<>();
+		
+		String encoded = this.encodedPayload;
+		int start = 0;
+		int end;
+		
+		while((end = encoded.indexOf("||", start)) != -1) {
+			parts.add(encoded.substring(start, end));
+			start = end + 2;
+		}
+		
+		parts.add(encoded.substring(start));
+		
+		// same parts as String.split("\\|\\|"), which drops trailing empty parts
+		while(parts.size() > 1 && parts.get(parts.size() - 1).isEmpty()) {
+			parts.remove(parts.size() - 1);
+		}
+		
+		this.payloadParts = parts;
+	}
+	
+	/**
+	 * Copy of the block without payload, which keeps the hash of the full block
+	 * @return Block, header that must not be encoded or changed
+	 */
+	public Block toHeader() {
+		Block header = new Block(this.merkleHashing);
+		header.height = this.height;
+		header.creator = this.creator;
+		header.previous_hash = this.previous_hash;
+		header.previous_chunk = this.previous_chunk;
+		header.hash = this.getHash();
+		header.merkleRoot = this.merkleHashing ? this.getMerkleRoot() : null;
+		header.pruned = true;
+		
+		return header;
+	}
+	
+	/**
+	 * @return boolean, true if this is a header without payload
+	 */
+	public boolean isPruned() {
+		return this.pruned;
 	}
 	
 	public void decodeNewBlock(String signal_payload) {
@@ -93,7 +272,11 @@ public class Block {
 		this.creator = block_data[1];
 		this.previous_hash = block_data[2];
 		this.previous_chunk = block_data[3];
-		this.payload = block_data[4];
+		this.encodedPayload = block_data[4];
+		this.payloadParts = null;
+		this.previousHash = null;
+		this.hash = null;
+		this.clearMerkleTree();
 	}
 	
 	@Override
@@ -1,51 +1,107 @@
 package simulatedHybridBlockchain;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
+/**
+ * Chunk of consecutive blocks, filled block by block as they are added to the chain (see Blockchain.addBlock).
+ * Encoded as "previous_chunk:hash||hash||..." with the newest block first, members are kept encoded
+ * in a buffer growing towards its start, so that hashing a chunk does not rebuild it from its blocks.
+ */
 public class BlockChunk {
-	private LinkedHashSet<String> blocks = new LinkedHashSet<>();
+	// member block hashes in chain order, and as a set for membership queries
+	private ArrayList<Hash256> blocks = new ArrayList<>();
+	private HashSet<Hash256> members = new HashSet<>();
 	private String previous;
 	
+	// encoded members, newest block first, in encoded[start..]
+	private char[] encoded = new char[132];
+	private int start = this.encoded.length;
+	
+	// memoized getHash(), cleared by every change of the chunk
+	private Hash256 hash = null;
+	
 	public BlockChunk() {
-		
+	
 	}
 	
 	public void addPrevious(String last_chunk) {
 		this.previous = last_chunk;
+		this.hash = null;
+	}
+	
+	public String getPrevious() {
+		return this.previous;
 	}
 	
 	@Override
 	public String toString() {
-		return this.previous+":"+String.join("||", this.blocks);
+		return this.previous+":"+new String(this.encoded, this.start, this.encoded.length - this.start);
 	}
-
+	
 	/**
-	 * Calculates SHA-256 hash of the block from this.toString()
-	 * @return String, SHA-256 hash | null
+	 * Calculates SHA-256 hash of the chunk from this.toString(), computed once until the chunk changes
+	 * @return Hash256, SHA-256 hash
 	 */
-	public String getHash() {
-		try {
-			MessageDigest hash = MessageDigest.getInstance("SHA-256");
-			
-			String chunk = this.toString();
-			hash.update(chunk.getBytes("UTF-8"));
-			
-			return String.format("%064x", new BigInteger(1, hash.digest()));
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
+	public Hash256 getHash() {
+		if(this.hash == null) {
+			this.hash = Hash256.digest(this.toString());
 		}
 		
-		return null;
+		return this.hash;
 	}
-
-	public void addBlock(String block_hash) {
+	
+	/**
+	 * @param block_hash, block following the last one of the chunk, ignored if already a member
+	 */
+	public void addBlock(Hash256 block_hash) {
+		if(!this.members.add(block_hash)) {
+			return;
+		}
+		
 		this.blocks.add(block_hash);
+		
+		String hex = block_hash.toString();
+		int length = this.blocks.size() > 1 ? hex.length() + 2 : hex.length();
+		
+		if(this.start < length) {
+			char[] grown = new char[Math.max(this.encoded.length * 2, this.encoded.length + length)];
+			int used = this.encoded.length - this.start;
+			
+			System.arraycopy(this.encoded, this.start, grown, grown.length - used, used);
+			this.encoded = grown;
+			this.start = grown.length - used;
+		}
+		
+		this.start -= length;
+		hex.getChars(0, hex.length(), this.encoded, this.start);
+		
+		if(this.blocks.size() > 1) {
+			this.encoded[this.start + hex.length()] = '|';
+			this.encoded[this.start + hex.length() + 1] = '|';
+		}
+		
+		this.hash = null;
+	}
+	
+	/**
+	 * @param block_hash
+	 * @return boolean, true if the block is a member of the chunk
+	 */
+	public boolean contains(Hash256 block_hash) {
+		return this.members.contains(block_hash);
+	}
+	
+	/**
+	 * @return List<Hash256>, read-only member block hashes in chain order
+	 */
+	public List<Hash256> getBlocks() {
+		return Collections.unmodifiableList(this.blocks);
 	}
 	
+	public int size() {
+		return this.blocks.size();
+	}
 }
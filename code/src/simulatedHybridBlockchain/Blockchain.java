@@ -1,24 +1,59 @@
 package simulatedHybridBlockchain;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class Blockchain {
-	protected HashMap<String, Block> blocks = new HashMap<>();
-	private HashMap<String, BlockChunk> chunks = new HashMap<>();
+	// blocks by hash, may be shared with other chains and also hold their blocks (see setBlockStore)
+	protected Map<Hash256, Block> blocks = new HashMap<>();
+	private HashMap<Hash256, BlockChunk> chunks = new HashMap<>();
+	
+	// blocks on top of the last chunk, filled by addBlock and sealed by addChunk
+	private BlockChunk openChunk = new BlockChunk();
+	
+	// block hashes by height - 1, decides which blocks belong to this chain
+	private ArrayList<Hash256> heightIndex = new ArrayList<>();
 	
 	protected int height = 0;
+	
+	// heights of blocks by hashes of their transactions, only kept with Merkle hashing to serve inclusion proofs
+	private HashMap<Hash256, Integer> transactionHeights = new HashMap<>();
+	
+	// heights of the last blocks of chunks sealed by addChunk, in chain order
+	private ArrayList<Integer> sealedHeights = new ArrayList<>();
+	
+	// open chunk is sealed when a received block refers to it, see setSealingReceivedChunks
+	private boolean sealingReceivedChunks = false;
+	
+	// blocks up to prunedHeight are only kept as headers, see pruneChunks
+	private int prunedHeight = 0;
+	private int prunedChunks = 0;
+	
+	// store holding blocks of this and other chains, null if blocks are not shared
+	private SimulatedBlockStore store = null;
+	
+	// hex form as written into new blocks and chunks ("INIT" for an empty chain)
 	private String last_block;
 	private String last_chunk;
 	
+	// map keys of last block and chunk, null until one is added
+	private Hash256 lastBlockHash = null;
+	private Hash256 lastChunkHash = null;
+	
 	private int lastReceived = 0;
 	
 	public Blockchain() {
 		this.last_block = "INIT";
 		this.last_chunk = "INIT";
+		this.openChunk.addPrevious(this.last_chunk);
 	}
 	
 	public Blockchain(String initial_payload) {
 		this.last_chunk = null;
+		this.openChunk.addPrevious(this.last_chunk);
 		
 		Block block = new Block();
 		block.addPayload(initial_payload);
@@ -27,42 +62,133 @@ public class Blockchain {
 		this.addBlock(block);
 	}
 
+	/**
+	 * Keeps blocks in the shared store instead of a map of this chain, must be set while the chain is empty
+	 * @param store
+	 */
+	public void setBlockStore(SimulatedBlockStore store) {
+		if(this.height > 0) {
+			throw new IllegalStateException("Block store of a non-empty chain can not be changed");
+		}
+		
+		this.blocks = store.getBlocks();
+		this.store = store;
+		
+		store.addChain(this.height);
+	}
+
+	/**
+	 * Seals the open chunk when a received block was created on top of it, so that chains of nodes
+	 * which do not create blocks follow the chunks sealed by block creators (see SimulatedBlockWriteNode)
+	 * @param enabled
+	 */
+	public void setSealingReceivedChunks(boolean enabled) {
+		this.sealingReceivedChunks = enabled;
+	}
+
 	public void addBlock(Block block) {
 		// establish Merkle tree
-		block.addPrevious(this.last_block);
-		block.setHeight(this.height+1);
+		// received blocks already link to the last block and may be shared, so they are only changed if needed
+		if(!Objects.equals(block.getPrevious(), this.last_block)) {
+			block.addPrevious(this.last_block);
+		}
+		
+		if(block.getHeight() != this.height+1) {
+			block.setHeight(this.height+1);
+		}
+		
+		// the creator sealed the open chunk before creating the block
+		String previousChunk = block.getPreviousChunk();
 		
-		this.blocks.put(block.getHash(), block);
+		if(this.sealingReceivedChunks && this.openChunk.size() > 0 && previousChunk != null && !previousChunk.equals(this.last_chunk)
+				&& previousChunk.equals(this.openChunk.getHash().toString())) {
+			this.addChunk();
+		}
+		
+		Hash256 hash = block.getHash();
+		
+		this.blocks.putIfAbsent(hash, block);
+		this.heightIndex.add(hash);
 		this.height++;
-		this.last_block = block.getHash();
+		
+		if(this.store != null) {
+			this.store.moveChain(this.height - 1, this.height);
+		}
+		
+		if(block.isMerkleHashing()) {
+			for(Hash256 transaction: block.getTransactionHashes()) {
+				this.transactionHeights.putIfAbsent(transaction, this.height);
+			}
+		}
+		this.lastBlockHash = hash;
+		this.last_block = hash.toString();
+		
+		// open chunk is the run of newest blocks created on top of the last chunk, any other block ends it
+		if(previousChunk != null && previousChunk.equals(this.last_chunk)) {
+			this.openChunk.addBlock(hash);
+		} else if(this.openChunk.size() > 0) {
+			this.openChunk = new BlockChunk();
+			this.openChunk.addPrevious(this.last_chunk);
+		}
 	}
 	
 	public void addChunk() {
-		BlockChunk chunk = new BlockChunk();
+		BlockChunk chunk = this.openChunk;
+		Hash256 hash = chunk.getHash();
 		
-		chunk.addPrevious(last_chunk);
+		this.chunks.put(hash, chunk);
+		this.lastChunkHash = hash;
 		
-		String block_hash = this.getCurrentHash();
+		if(chunk.size() > 0) {
+			this.sealedHeights.add(this.height);
+		}
+		this.last_chunk = hash.toString();
 		
-		while(true) {
-			Block inspected = this.blocks.getOrDefault(block_hash, null);
+		this.openChunk = new BlockChunk();
+		this.openChunk.addPrevious(this.last_chunk);
+	}
+	
+	/**
+	 * Keeps only headers of blocks up to the last chunk sealed by addChunk that is buried by at least depth blocks
+	 * @param depth, blocks on top of the last block of a chunk, at least 1
+	 * @return int, amount of blocks pruned by this call
+	 */
+	public int pruneChunks(int depth) {
+		int pruned = 0;
+		
+		while(this.prunedChunks < this.sealedHeights.size() && this.sealedHeights.get(this.prunedChunks) <= this.height - depth) {
+			int last = this.sealedHeights.get(this.prunedChunks);
 			
-			if(inspected == null) {
-				break;
+			if(this.store == null) {
+				for(int a = this.prunedHeight + 1; a <= last; a++) {
+					Block block = this.getByHeight(a);
+					this.blocks.put(block.getHash(), block.toHeader());
+				}
 			}
 			
-			String last = inspected.getPreviousChunk();
-			
-			if(last != null && last.equals(this.last_chunk)) {
-				chunk.addBlock(block_hash);
-				block_hash = inspected.getPrevious();
-			} else {
-				break;
-			}
+			pruned += last - this.prunedHeight;
+			this.prunedHeight = last;
+			this.prunedChunks++;
 		}
 		
-		this.chunks.put(chunk.getHash(), chunk);
-		this.last_chunk = chunk.getHash();
+		return pruned;
+	}
+	
+	/**
+	 * @return int, height of the last block kept only as header, 0 if nothing was pruned
+	 */
+	public int getPrunedHeight() {
+		return this.prunedHeight;
+	}
+	
+	/**
+	 * @param block_hash, null for the start of the chain ("INIT")
+	 * @return boolean, true if the block following block_hash is only kept as header
+	 */
+	public boolean isPrunedAfter(Hash256 block_hash) {
+		Block next = this.getNext(block_hash);
+		
+		return next != null && next.getHeight() <= this.prunedHeight;
 	}
 	
 	public int getHeight() {
@@ -70,11 +196,11 @@ public class Blockchain {
 	}
 	
 	public Block getCurrentBlock() {
-		return this.blocks.getOrDefault(this.last_block, null);
+		return this.getBlock(this.lastBlockHash);
 	}
 	
 	public BlockChunk getCurrentChunk() {
-		return this.chunks.getOrDefault(this.last_chunk, null);
+		return this.chunks.getOrDefault(this.lastChunkHash, null);
 	}
 	
 	public String getCurrentHash() {
@@ -84,30 +210,112 @@ public class Blockchain {
 	public String getCurrentChunkHash() {
 		return this.last_chunk;
 	}
+	
+	/**
+	 * @return BlockChunk, blocks created on top of the last chunk so far, must not be changed
+	 */
+	public BlockChunk getOpenChunk() {
+		return this.openChunk;
+	}
+	
+	/**
+	 * @param chunk_hash
+	 * @return BlockChunk, chunk sealed by this chain | null if not found
+	 */
+	public BlockChunk getChunk(Hash256 chunk_hash) {
+		return chunk_hash != null ? this.chunks.get(chunk_hash) : null;
+	}
+	
+	/**
+	 * @return Hash256, hash of the last block | null if the chain is empty
+	 */
+	public Hash256 getCurrentBlockHash() {
+		return this.lastBlockHash;
+	}
 
-	public String findByPrevious(String block_hash) {
-		int search_height = this.height;
-		String last_known_hash = this.last_block;
+	/**
+	 * @param block_hash, null for the start of the chain ("INIT")
+	 * @return String, encoded block following block_hash | null if not found or pruned
+	 */
+	public String findByPrevious(Hash256 block_hash) {
+		Block next = this.getNext(block_hash);
 		
-		while(search_height > 0) {
-			Block prev = this.blocks.getOrDefault(last_known_hash, null);
-			
-			if(prev == null) {
-				// we don't have previous block, perhaps it is a part of un-fetched chunk
-				// return an empty response instead of null
-				return "";
-			}
-			
-			if(prev.getPrevious().equals(block_hash)) {
-				return this.blocks.get(last_known_hash).toString();
-			} else {
-				last_known_hash = this.blocks.get(last_known_hash).getPrevious();
-			}
-			
-			search_height--;
+		return next != null && !next.isPruned() ? next.toString() : null;
+	}
+	
+	/**
+	 * @param block_hash, null for the start of the chain ("INIT")
+	 * @param count, maximum amount of blocks
+	 * @return List<Block>, blocks following block_hash in order of height, empty if block_hash is unknown or the last block
+	 */
+	public List<Block> getRangeAfter(Hash256 block_hash, int count) {
+		Block next = this.getNext(block_hash);
+		
+		if(next == null) {
+			return new ArrayList<>();
+		}
+		
+		return this.getRange(next.getHeight(), next.getHeight() + count - 1);
+	}
+	
+	// shared block store does not allow null keys
+	private Block getBlock(Hash256 block_hash) {
+		return block_hash != null ? this.blocks.get(block_hash) : null;
+	}
+	
+	private Block getNext(Hash256 block_hash) {
+		if(block_hash == null) {
+			return this.getByHeight(1);
+		}
+		
+		Block block = this.blocks.get(block_hash);
+		
+		// a shared store also knows blocks of other chains
+		if(block == null || block != this.getByHeight(block.getHeight())) {
+			return null;
+		}
+		
+		return this.getByHeight(block.getHeight() + 1);
+	}
+	
+	/**
+	 * @param transaction, hash of a payload part
+	 * @return Block, first block of the chain including the transaction | null if not found or Merkle hashing is disabled
+	 */
+	public Block findByTransaction(Hash256 transaction) {
+		Integer height = this.transactionHeights.get(transaction);
+		
+		return height != null ? this.getByHeight(height) : null;
+	}
+	
+	/**
+	 * @param height, starting at 1
+	 * @return Block | null if the chain is not that high
+	 */
+	public Block getByHeight(int height) {
+		if(height < 1 || height > this.heightIndex.size()) {
+			return null;
+		}
+		
+		return this.blocks.get(this.heightIndex.get(height - 1));
+	}
+	
+	/**
+	 * @param from, first height, inclusive
+	 * @param to, last height, inclusive
+	 * @return List<Block>, blocks of the chain within the range in order of height, clipped to the chain
+	 */
+	public List<Block> getRange(int from, int to) {
+		int first = Math.max(from, 1);
+		int last = Math.min(to, this.heightIndex.size());
+		
+		List<Block> range = new ArrayList<>(Math.max(last - first + 1, 0));
+		
+		for(int a = first; a <= last; a++) {
+			range.add(this.blocks.get(this.heightIndex.get(a - 1)));
 		}
 		
-		return null;
+		return range;
 	}
 
 	public boolean suspiciousFuture(int height2) {
@@ -0,0 +1,75 @@
+package simulatedHybridBlockchain;
+
+import java.util.Random;
+
+/**
+ * Times Blockchain lookups on long chains, ie. serving BLOCK_REQUEST signals of lagging peers.
+ * Usage: BlockchainBenchmark [blocks] [lookups]
+ */
+public class BlockchainBenchmark {
+	public static void main(String[] args) {
+		int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		
+		Random rng = new Random(42);
+		
+		long startTime = System.nanoTime();
+		Blockchain chain = new Blockchain();
+		
+		for(int a = 0; a < blocks; a++) {
+			Block block = new Block();
+			block.addCreator("write_0");
+			block.addPreviousChunk("INIT");
+			block.addPayload("publish_0;"+a);
+			chain.addBlock(block);
+		}
+		
+		System.out.printf("Built chain of %d blocks in %.2f s\n", chain.getHeight(), (System.nanoTime() - startTime) / 1e9);
+		
+		// requests carry hashes of blocks the peer already has, anywhere in the chain
+		Hash256[] requested = new Hash256[lookups];
+		
+		for(int a = 0; a < lookups; a++) {
+			requested[a] = chain.getByHeight(1 + rng.nextInt(blocks - 1)).getHash();
+		}
+		
+		// warm-up, then timed round
+		for(int round = 0; round < 2; round++) {
+			int found = 0;
+			startTime = System.nanoTime();
+			
+			for(Hash256 hash: requested) {
+				if(chain.findByPrevious(hash) != null) {
+					found++;
+				}
+			}
+			
+			double elapsed = (System.nanoTime() - startTime) / 1e9;
+			
+			if(round == 1) {
+				System.out.printf("findByPrevious: %d/%d found in %.3f s, %.0f ns per lookup\n", found, lookups, elapsed, elapsed * 1e9 / lookups);
+			}
+		}
+		
+		startTime = System.nanoTime();
+		int total = 0;
+		
+		for(int a = 0; a < lookups; a++) {
+			total += chain.getByHeight(1 + rng.nextInt(blocks)).getHeight() > 0 ? 1 : 0;
+		}
+		
+		System.out.printf("getByHeight: %d lookups in %.3f s\n", total, (System.nanoTime() - startTime) / 1e9);
+		
+		startTime = System.nanoTime();
+		total = chain.getRange(1, blocks).size();
+		
+		System.out.printf("getRange: %d blocks in %.3f s\n", total, (System.nanoTime() - startTime) / 1e9);
+		
+		// all blocks were created on top of "INIT", ie. form one open chunk
+		int members = chain.getOpenChunk().size();
+		startTime = System.nanoTime();
+		chain.addChunk();
+		
+		System.out.printf("addChunk: sealed chunk of %d blocks in %.3f s\n", members, (System.nanoTime() - startTime) / 1e9);
+	}
+}
@@ -14,6 +14,6 @@ public class DummyTransaction extends Transaction {
 	
 	private void generateData() {
 		// predicable data
-		this.payload = (this.origin.hashCode()/(this.networkTick == 0 ? 1 : this.networkTick))+"";
+		this.setPayload((this.origin.hashCode()/(this.networkTick == 0 ? 1 : this.networkTick))+"");
 	}
 }
@@ -0,0 +1,189 @@
+package simulatedHybridBlockchain;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set of hashes that expire at a chain height, eg. transactions a node has seen within the last few blocks.
+ * Each hash is tagged with the height it expires at, a hash is contained while the current height is below it.
+ * Heights only grow, chains of nodes are never rolled back, so an expired hash stays expired.
+ * Moving to a new height (see expire) drops the counts of expiring heights, expired hashes are dropped lazily.
+ *
+ * Open addressing with linear probing, slots of expired hashes are reused by new ones and skipped on rehash,
+ * so memory is bounded by hashes added within the expiry window.
+ */
+public class ExpiringHashSet {
+	private Hash256[] keys;
+	private int[] expiries;
+	private int mask;
+	
+	// slots holding a hash, including expired ones
+	private int used = 0;
+	
+	// hashes not expired yet, in total and by height they expire at
+	private int live = 0;
+	private TreeMap<Integer, Integer> liveByExpiry = new TreeMap<>();
+	
+	private int height = 0;
+	
+	public ExpiringHashSet() {
+		this(16);
+	}
+	
+	public ExpiringHashSet(int capacity) {
+		this.allocate(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1);
+	}
+	
+	/**
+	 * @param hash
+	 * @return boolean, true if the hash was added and has not expired yet
+	 */
+	public boolean contains(Hash256 hash) {
+		int slot = this.find(hash);
+		
+		return slot != -1 && this.expiries[slot] > this.height;
+	}
+	
+	/**
+	 * Adds the hash, or extends its expiry if it is already contained
+	 * @param hash
+	 * @param expiry, height from which the hash is no longer contained
+	 */
+	public void add(Hash256 hash, int expiry) {
+		int slot = this.find(hash);
+		
+		if(slot != -1) {
+			if(this.expiries[slot] > this.height) {
+				if(expiry > this.expiries[slot]) {
+					this.uncount(this.expiries[slot]);
+					this.count(expiry);
+					this.expiries[slot] = expiry;
+				}
+			} else if(expiry > this.height) {
+				this.count(expiry);
+				this.expiries[slot] = expiry;
+			}
+			
+			return;
+		}
+		
+		if(expiry <= this.height) {
+			return;
+		}
+		
+		if((this.used + 1) * 2 > this.keys.length) {
+			this.rehash();
+		}
+		
+		// reuse the first expired slot on the probe sequence, the hash is not in a later one
+		int free = -1;
+		
+		for(slot = this.slotOf(hash); this.keys[slot] != null; slot = (slot + 1) & this.mask) {
+			if(free == -1 && this.expiries[slot] <= this.height) {
+				free = slot;
+			}
+		}
+		
+		if(free == -1) {
+			free = slot;
+			this.used++;
+		}
+		
+		this.keys[free] = hash;
+		this.expiries[free] = expiry;
+		this.count(expiry);
+	}
+	
+	/**
+	 * @param height, current height, hashes expiring at or below it are no longer contained, a lower height is ignored
+	 */
+	public void expire(int height) {
+		if(height <= this.height) {
+			return;
+		}
+		
+		this.height = height;
+		
+		Map<Integer, Integer> expired = this.liveByExpiry.headMap(height, true);
+		
+		for(int count: expired.values()) {
+			this.live -= count;
+		}
+		
+		expired.clear();
+	}
+	
+	/**
+	 * @return int, amount of hashes not expired yet
+	 */
+	public int size() {
+		return this.live;
+	}
+	
+	private void count(int expiry) {
+		this.liveByExpiry.merge(expiry, 1, Integer::sum);
+		this.live++;
+	}
+	
+	private void uncount(int expiry) {
+		this.liveByExpiry.computeIfPresent(expiry, (key, count) -> count > 1 ? count - 1 : null);
+		this.live--;
+	}
+	
+	private int find(Hash256 hash) {
+		for(int slot = this.slotOf(hash); this.keys[slot] != null; slot = (slot + 1) & this.mask) {
+			if(this.keys[slot].equals(hash)) {
+				return slot;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private int slotOf(Hash256 hash) {
+		// hashCode is String.hashCode of the hex form, spread its bits over the table
+		int h = hash.hashCode() * 0x9E3779B9;
+		
+		return (h ^ (h >>> 16)) & this.mask;
+	}
+	
+	private void rehash() {
+		Hash256[] keys = this.keys;
+		int[] expiries = this.expiries;
+		
+		// sized for live hashes only, so that the table shrinks again after bursts,
+		// but kept while at least an eighth is live, so that steady churn only drops expired slots
+		int capacity = keys.length;
+		
+		if((this.live + 1) * 4 > capacity || (this.live + 1) * 8 < capacity) {
+			capacity = 16;
+			
+			while(capacity < (this.live + 1) * 4) {
+				capacity <<= 1;
+			}
+		}
+		
+		this.allocate(capacity);
+		
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] != null && expiries[slot] > this.height) {
+				int target = this.slotOf(keys[slot]);
+				
+				while(this.keys[target] != null) {
+					target = (target + 1) & this.mask;
+				}
+				
+				this.keys[target] = keys[slot];
+				this.expiries[target] = expiries[slot];
+				this.used++;
+			}
+		}
+	}
+	
+	private void allocate(int capacity) {
+		this.keys = new Hash256[capacity];
+		this.expiries = new int[capacity];
+		this.mask = capacity - 1;
+		this.used = 0;
+	}
+}
@@ -0,0 +1,167 @@
+package simulatedHybridBlockchain;
+
+/**
+ * Immutable SHA-256 hash of blocks, chunks, transactions and signals, stored as 32 bytes in four longs.
+ * Hex form (64 lowercase characters) is only produced for logs and signal payloads (see toString, fromHex).
+ *
+ * hashCode() equals hashCode() of the hex form, so maps keyed by hashes iterate in the same order
+ * as they did with hex String keys (block payloads are built from transaction pool order).
+ * Digests are computed and counted by Sha256.
+ */
+public final class Hash256 implements Comparable<Hash256> {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	// big-endian 64 bit words of the hash
+	private final long w0;
+	private final long w1;
+	private final long w2;
+	private final long w3;
+	
+	private final int hashCode;
+	
+	private Hash256(long w0, long w1, long w2, long w3) {
+		this.w0 = w0;
+		this.w1 = w1;
+		this.w2 = w2;
+		this.w3 = w3;
+		
+		// String.hashCode() of the hex form
+		int h = 0;
+		
+		for(long word: new long[] {w0, w1, w2, w3}) {
+			for(int shift = 60; shift >= 0; shift -= 4) {
+				h = 31 * h + HEX[(int)(word >>> shift) & 0xf];
+			}
+		}
+		
+		this.hashCode = h;
+	}
+	
+	/**
+	 * @param data
+	 * @return Hash256, SHA-256 of UTF-8 bytes of data
+	 */
+	public static Hash256 digest(String data) {
+		byte[] hash = Sha256.digest(data);
+		
+		return new Hash256(word(hash, 0), word(hash, 8), word(hash, 16), word(hash, 24));
+	}
+	
+	/**
+	 * @param left
+	 * @param right
+	 * @return Hash256, SHA-256 of 32 bytes of left followed by 32 bytes of right, ie. inner node of a MerkleTree
+	 */
+	public static Hash256 combine(Hash256 left, Hash256 right) {
+		byte[] hash = Sha256.digest(left.toBytes(), right.toBytes());
+		
+		return new Hash256(word(hash, 0), word(hash, 8), word(hash, 16), word(hash, 24));
+	}
+	
+	/**
+	 * @param hex, 64 hex characters
+	 * @return Hash256 | null if hex is not a hash (eg. "INIT")
+	 */
+	public static Hash256 fromHex(CharSequence hex) {
+		if(hex == null || hex.length() != 64) {
+			return null;
+		}
+		
+		long[] words = new long[4];
+		
+		for(int a = 0; a < 64; a++) {
+			int digit = Character.digit(hex.charAt(a), 16);
+			
+			if(digit < 0) {
+				return null;
+			}
+			
+			words[a / 16] = (words[a / 16] << 4) | digit;
+		}
+		
+		return new Hash256(words[0], words[1], words[2], words[3]);
+	}
+	
+	private static long word(byte[] bytes, int offset) {
+		long word = 0;
+		
+		for(int a = offset; a < offset + 8; a++) {
+			word = (word << 8) | (bytes[a] & 0xff);
+		}
+		
+		return word;
+	}
+	
+	/**
+	 * @return byte[], 32 bytes of the hash
+	 */
+	public byte[] toBytes() {
+		byte[] bytes = new byte[32];
+		int position = 0;
+		
+		for(long word: new long[] {this.w0, this.w1, this.w2, this.w3}) {
+			for(int shift = 56; shift >= 0; shift -= 8) {
+				bytes[position++] = (byte)(word >>> shift);
+			}
+		}
+		
+		return bytes;
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if(this == other) {
+			return true;
+		}
+		
+		if(!(other instanceof Hash256)) {
+			return false;
+		}
+		
+		Hash256 hash = (Hash256) other;
+		
+		return this.hashCode == hash.hashCode && this.w0 == hash.w0 && this.w1 == hash.w1 && this.w2 == hash.w2 && this.w3 == hash.w3;
+	}
+	
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+	
+	// same order as the hex form, used by HashMap bins with many collisions
+	@Override
+	public int compareTo(Hash256 other) {
+		int result = Long.compareUnsigned(this.w0, other.w0);
+		
+		if(result == 0) {
+			result = Long.compareUnsigned(this.w1, other.w1);
+		}
+		
+		if(result == 0) {
+			result = Long.compareUnsigned(this.w2, other.w2);
+		}
+		
+		if(result == 0) {
+			result = Long.compareUnsigned(this.w3, other.w3);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return String, 64 lowercase hex characters
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[64];
+		int position = 0;
+		
+		for(long word: new long[] {this.w0, this.w1, this.w2, this.w3}) {
+			for(int shift = 60; shift >= 0; shift -= 4) {
+				chars[position++] = HEX[(int)(word >>> shift) & 0xf];
+			}
+		}
+		
+		return new String(chars);
+	}
+}
@@ -0,0 +1,172 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayDeque;
+
+/**
+ * Incoming signals waiting for an incoming thread of a node (see SimulatedNode.executeIncomingThreads).
+ * By default one stack, the latest signal is parsed first. Prioritized queues keep signals of each class
+ * in arrival order and dequeue classes by weighted round robin, so responses and blocks wait for a bounded
+ * amount of dequeues however many transactions are queued.
+ *
+ * Depth and waiting ticks (from queueing a job to its dequeue) are kept per class in both modes.
+ */
+public class IngressQueues {
+	public static final int CONTROL = 0;
+	public static final int BLOCK = 1;
+	public static final int TRANSACTION = 2;
+	public static final int CLASSES = 3;
+	
+	public static final String[] CLASS_NAMES = { "control", "block", "transaction" };
+	
+	// dequeues of a class per round, control and block traffic go ahead of transactions
+	private static final int[] WEIGHTS = { 4, 2, 1 };
+	
+	private boolean prioritized = false;
+	
+	// all signals when not prioritized, otherwise by class
+	private ArrayDeque<SimulatedJob> stack = new ArrayDeque<>();
+	private ArrayDeque<SimulatedJob>[] queues;
+	
+	// class dequeued by the round robin and its dequeues left in the round
+	private int current = 0;
+	private int credits = WEIGHTS[0];
+	
+	private int size = 0;
+	private int[] depths = new int[CLASSES];
+	private int[] peakDepths = new int[CLASSES];
+	private long[] dequeued = new long[CLASSES];
+	private long[] waitTicks = new long[CLASSES];
+	private int[] maxWaits = new int[CLASSES];
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public IngressQueues() {
+		this.queues = new ArrayDeque[CLASSES];
+		
+		for(int c = 0; c < CLASSES; c++) {
+			this.queues[c] = new ArrayDeque<>();
+		}
+	}
+	
+	/**
+	 * @param prioritized, true for weighted queues by class, false for one stack, ignored once signals are queued
+	 */
+	public void setPrioritized(boolean prioritized) {
+		if(this.size == 0) {
+			this.prioritized = prioritized;
+		}
+	}
+	
+	public boolean isPrioritized() {
+		return this.prioritized;
+	}
+	
+	/**
+	 * @param type, signal type (see NodeSignal)
+	 * @return int, class of the signal type
+	 */
+	public static int classOf(int type) {
+		switch(type) {
+			case NodeSignal.NEW_TRANSACTION_SIGNAL:
+			case NodeSignal.TRANSACTION_ANNOUNCE_SIGNAL:
+			case NodeSignal.TRANSACTION_REQUEST_SIGNAL:
+				return TRANSACTION;
+			case NodeSignal.NEW_BLOCK_SIGNAL:
+			case NodeSignal.NEW_AUTH_BLOCK_SIGNAL:
+			case NodeSignal.BLOCK_REQUEST_SIGNAL:
+			case NodeSignal.BLOCK_CHUNK_REQUEST_SIGNAL:
+			case NodeSignal.AUTH_BLOCK_REQUEST_SIGNAL:
+			case NodeSignal.BLOCK_RESPONSE_SIGNAL:
+			case NodeSignal.BLOCK_CHUNK_RESPONSE_SIGNAL:
+			case NodeSignal.LIGHT_PROOF_REQUEST_SIGNAL:
+			case NodeSignal.LIGHT_PROOF_RESPONSE_SIGNAL:
+				return BLOCK;
+			default:
+				// ACTIVE, ACK, REQUEST_DENY, REQUEST_WAIT and REQUEST_REDIRECT
+				return CONTROL;
+		}
+	}
+	
+	/**
+	 * @param job
+	 * @param tick, current tick
+	 */
+	public void add(SimulatedJob job, int tick) {
+		int signalClass = classOf(job.getSignal().getType());
+		
+		job.setQueuedAt(tick);
+		
+		if(this.prioritized) {
+			this.queues[signalClass].addLast(job);
+		} else {
+			this.stack.addFirst(job);
+		}
+		
+		this.size++;
+		this.depths[signalClass]++;
+		this.peakDepths[signalClass] = Math.max(this.peakDepths[signalClass], this.depths[signalClass]);
+	}
+	
+	/**
+	 * @param tick, current tick
+	 * @return SimulatedJob, next job to parse | null if there is none
+	 */
+	public SimulatedJob poll(int tick) {
+		if(this.size == 0) {
+			return null;
+		}
+		
+		SimulatedJob job;
+		
+		if(this.prioritized) {
+			// skip empty classes and classes out of credits, one round finds a queued job
+			while(this.queues[this.current].isEmpty() || this.credits == 0) {
+				this.current = (this.current + 1) % CLASSES;
+				this.credits = WEIGHTS[this.current];
+			}
+			
+			this.credits--;
+			job = this.queues[this.current].removeFirst();
+		} else {
+			job = this.stack.removeFirst();
+		}
+		
+		int signalClass = classOf(job.getSignal().getType());
+		int wait = tick - job.getQueuedAt();
+		
+		this.size--;
+		this.depths[signalClass]--;
+		this.dequeued[signalClass]++;
+		this.waitTicks[signalClass] += wait;
+		this.maxWaits[signalClass] = Math.max(this.maxWaits[signalClass], wait);
+		
+		return job;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public int getDepth(int signalClass) {
+		return this.depths[signalClass];
+	}
+	
+	public int getPeakDepth(int signalClass) {
+		return this.peakDepths[signalClass];
+	}
+	
+	public long getDequeued(int signalClass) {
+		return this.dequeued[signalClass];
+	}
+	
+	/**
+	 * @param signalClass
+	 * @return long, ticks all dequeued signals of the class waited
+	 */
+	public long getWaitTicks(int signalClass) {
+		return this.waitTicks[signalClass];
+	}
+	
+	public int getMaxWait(int signalClass) {
+		return this.maxWaits[signalClass];
+	}
+}
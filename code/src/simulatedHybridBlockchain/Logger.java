@@ -15,6 +15,9 @@ public class Logger {
 	private int lineCounter = 0;
 	private int correctLines = 0;
 	
+	// messages of threads in capture mode, printed later in a deterministic order (see SimulatedNetwork parallel mode)
+	private ThreadLocal<ArrayList<String>> captured = new ThreadLocal<>();
+	
 	public void addNodeWatch(ArrayList<String> watchNodes) {
 		this.watchNodes.addAll(watchNodes);
 	}
@@ -27,6 +30,15 @@ public class Logger {
 		this.watchSpecial.addAll(watchSpecial2);
 	}
 
+	/**
+	 * Allows callers to skip building expensive messages that would not be printed
+	 * @param type
+	 * @return boolean
+	 */
+	public boolean isSpecialWatched(String type) {
+		return this.watchSpecial.contains(type);
+	}
+	
 	public void regular(String origin, String message, int delay) {
 		if(this.watchNodes.contains(origin)) {
 			this.print(origin, message, delay);
@@ -45,8 +57,44 @@ public class Logger {
 		}
 	}
 	
+	/**
+	 * Starts capturing messages of the current thread instead of printing them
+	 */
+	public void startCapture() {
+		this.captured.set(new ArrayList<>());
+	}
+	
+	/**
+	 * Stops capturing messages of the current thread
+	 * @return ArrayList of captured messages, to be passed to flush()
+	 */
+	public ArrayList<String> stopCapture() {
+		ArrayList<String> messages = this.captured.get();
+		this.captured.remove();
+		
+		return messages;
+	}
+	
+	public void flush(ArrayList<String> messages) {
+		if(messages != null) {
+			for(String msg: messages) {
+				this.output(msg);
+			}
+		}
+	}
+	
 	private void print(String origin, String message, int delay) {
 		String msg = delay+": "+origin+" "+message;
+		ArrayList<String> messages = this.captured.get();
+		
+		if(messages != null) {
+			messages.add(msg);
+		} else {
+			this.output(msg);
+		}
+	}
+	
+	private void output(String msg) {
 		if(this.reader != null) {
 			try {
 				String line = this.reader.readLine();
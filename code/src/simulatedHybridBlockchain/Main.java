@@ -38,6 +38,114 @@ public class Main {
 		
 		String filename = "default.json";
 		
+		// headless run never shows charts and never sleeps, enabled by --headless (or --max-speed) or by scenario JSON
+		boolean headless = false;
+		
+		// threads for executing nodes due in the same tick, enabled by --parallel[=threads] or by scenario JSON
+		int parallelism = 1;
+		
+		// peers for new connections sampled from nodes with free slots, enabled by --peer-sampling or by scenario JSON
+		boolean peerSampling = false;
+		
+		// bandwidth accounted with binary signal encoding, enabled by --binary-wire or by scenario JSON
+		boolean binaryWire = false;
+		
+		// lagging nodes request runs of blocks, enabled by --chunk-sync or by scenario JSON
+		boolean chunkSync = false;
+		
+		// decoded blocks shared by all nodes, enabled by --shared-blocks or by scenario JSON
+		boolean sharedBlocks = false;
+		
+		// depth of chunks whose blocks are pruned on READ nodes, enabled by --prune-depth=blocks or by scenario JSON
+		int pruneDepth = 0;
+		
+		// block hashes over headers with Merkle roots, enabled by --merkle-blocks or by scenario JSON
+		boolean merkleBlocks = false;
+		
+		// limits of transaction pools, enabled by --mempool-transactions=, --mempool-bytes=, --mempool-per-origin=,
+		// --mempool-max-age=ticks or by scenario JSON, 0 means unlimited
+		int mempoolTransactions = 0;
+		long mempoolBytes = 0;
+		int mempoolPerOrigin = 0;
+		int mempoolMaxAge = 0;
+		
+		// limits of blocks and ticks write nodes batch transactions, enabled by --block-max-transactions=,
+		// --block-max-bytes=, --block-interval=ticks or by scenario JSON, 0 means unlimited
+		int blockMaxTransactions = 0;
+		long blockMaxBytes = 0;
+		int blockInterval = 0;
+		
+		// retransmissions driven by timer wheels, enabled by --retransmit-wheel or by scenario JSON
+		boolean retransmitWheel = false;
+		
+		// waiting blocks indexed and checked on chain changes only, enabled by --waiting-block-index or by scenario JSON
+		boolean waitingBlockIndex = false;
+		
+		// incoming signals queued by class with weighted dequeue, enabled by --priority-ingress or by scenario JSON
+		boolean priorityIngress = false;
+		
+		// ticks ACKs to a peer are collected into one batch, set by --ack-batch-window= or by scenario JSON
+		int ackBatchWindow = 0;
+		
+		// transactions announced by hash and fetched on demand, enabled by --transaction-inventory or by scenario JSON
+		boolean transactionInventory = false;
+		
+		// run time, hashing, bandwidth and mode statistics printed at the end, enabled by --stats or by scenario JSON
+		boolean stats = false;
+		ArrayList<String> positionalArgs = new ArrayList<>();
+		
+		for(String arg: args) {
+			if(arg.equals("--headless") || arg.equals("--max-speed")) {
+				headless = true;
+			} else if(arg.equals("--parallel")) {
+				parallelism = Runtime.getRuntime().availableProcessors();
+			} else if(arg.startsWith("--parallel=")) {
+				parallelism = Integer.parseInt(arg.substring("--parallel=".length()));
+			} else if(arg.equals("--peer-sampling")) {
+				peerSampling = true;
+			} else if(arg.equals("--binary-wire")) {
+				binaryWire = true;
+			} else if(arg.equals("--chunk-sync")) {
+				chunkSync = true;
+			} else if(arg.equals("--shared-blocks")) {
+				sharedBlocks = true;
+			} else if(arg.startsWith("--prune-depth=")) {
+				pruneDepth = Integer.parseInt(arg.substring("--prune-depth=".length()));
+			} else if(arg.equals("--merkle-blocks")) {
+				merkleBlocks = true;
+			} else if(arg.startsWith("--mempool-transactions=")) {
+				mempoolTransactions = Integer.parseInt(arg.substring("--mempool-transactions=".length()));
+			} else if(arg.startsWith("--mempool-bytes=")) {
+				mempoolBytes = Long.parseLong(arg.substring("--mempool-bytes=".length()));
+			} else if(arg.startsWith("--mempool-per-origin=")) {
+				mempoolPerOrigin = Integer.parseInt(arg.substring("--mempool-per-origin=".length()));
+			} else if(arg.startsWith("--mempool-max-age=")) {
+				mempoolMaxAge = Integer.parseInt(arg.substring("--mempool-max-age=".length()));
+			} else if(arg.startsWith("--block-max-transactions=")) {
+				blockMaxTransactions = Integer.parseInt(arg.substring("--block-max-transactions=".length()));
+			} else if(arg.startsWith("--block-max-bytes=")) {
+				blockMaxBytes = Long.parseLong(arg.substring("--block-max-bytes=".length()));
+			} else if(arg.startsWith("--block-interval=")) {
+				blockInterval = Integer.parseInt(arg.substring("--block-interval=".length()));
+			} else if(arg.equals("--retransmit-wheel")) {
+				retransmitWheel = true;
+			} else if(arg.equals("--waiting-block-index")) {
+				waitingBlockIndex = true;
+			} else if(arg.equals("--priority-ingress")) {
+				priorityIngress = true;
+			} else if(arg.startsWith("--ack-batch-window=")) {
+				ackBatchWindow = Integer.parseInt(arg.substring("--ack-batch-window=".length()));
+			} else if(arg.equals("--transaction-inventory")) {
+				transactionInventory = true;
+			} else if(arg.equals("--stats")) {
+				stats = true;
+			} else {
+				positionalArgs.add(arg);
+			}
+		}
+		
+		args = positionalArgs.toArray(new String[0]);
+		
 		try {
 			filename = args[0];
 		} catch(Exception e) {}
@@ -72,6 +180,27 @@ public class Main {
 		 * start 	(in ticks)
 		 * end 		(in ticks)
 		 * speed 	(in ticks)
+		 * headless	(boolean, no charts and no wall-clock pacing)
+		 * parallel	(threads used for nodes executed in the same tick)
+		 * peerSampling	(boolean, peers sampled from nodes with free slots)
+		 * binaryWire	(boolean, bandwidth accounted with binary signal encoding)
+		 * chunkSync	(boolean, lagging nodes request runs of blocks)
+		 * sharedBlocks	(boolean, decoded blocks shared by all nodes)
+		 * pruneDepth	(blocks on top of a chunk before READ nodes drop its payloads)
+		 * merkleBlocks	(boolean, block hashes over headers with Merkle roots, needed by SimulatedAuditNode)
+		 * mempoolTransactions	(most transactions in the pool of a node)
+		 * mempoolBytes	(most bytes of transactions in the pool of a node)
+		 * mempoolPerOrigin	(most transactions of one publisher in the pool of a node)
+		 * mempoolMaxAge	(ticks a transaction waits for a block before it is evicted)
+		 * blockMaxTransactions	(most transactions in a block)
+		 * blockMaxBytes	(most bytes of payload in a block)
+		 * blockInterval	(ticks write nodes batch transactions after the last block, unless the block is full)
+		 * retransmitWheel	(boolean, retransmissions of forwarded signals driven by timer wheels)
+		 * waitingBlockIndex	(boolean, waiting blocks indexed and checked only when the chain or forger changes)
+		 * priorityIngress	(boolean, incoming control, block and transaction signals queued apart and parsed in weighted turns)
+		 * ackBatchWindow	(ticks ACKs to a peer are collected before they are sent in one batch)
+		 * transactionInventory	(boolean, transactions announced by hash and requested by peers that have not seen them)
+		 * stats	(boolean, run time, hashing, bandwidth and mode statistics printed at the end)
 		 * nodes		(describes an object with one node recipe)
 		 * many_nodes 	(describes an object with multiple node recipes)
 		 * logging		(describes what logging will be done to STDOUT)
@@ -96,6 +225,79 @@ public class Main {
 				case "end":
 					limit = reader.nextInt();
 					break;
+				case "headless":
+					headless = reader.nextBoolean() || headless;
+					break;
+				case "parallel":
+					int threads = reader.nextInt();
+					parallelism = parallelism > 1 ? parallelism : threads;
+					break;
+				case "peerSampling":
+					peerSampling = reader.nextBoolean() || peerSampling;
+					break;
+				case "binaryWire":
+					binaryWire = reader.nextBoolean() || binaryWire;
+					break;
+				case "chunkSync":
+					chunkSync = reader.nextBoolean() || chunkSync;
+					break;
+				case "sharedBlocks":
+					sharedBlocks = reader.nextBoolean() || sharedBlocks;
+					break;
+				case "merkleBlocks":
+					merkleBlocks = reader.nextBoolean() || merkleBlocks;
+					break;
+				case "pruneDepth":
+					int depth = reader.nextInt();
+					pruneDepth = pruneDepth > 0 ? pruneDepth : depth;
+					break;
+				case "mempoolTransactions":
+					int transactions = reader.nextInt();
+					mempoolTransactions = mempoolTransactions > 0 ? mempoolTransactions : transactions;
+					break;
+				case "mempoolBytes":
+					long bytes = reader.nextLong();
+					mempoolBytes = mempoolBytes > 0 ? mempoolBytes : bytes;
+					break;
+				case "mempoolPerOrigin":
+					int perOrigin = reader.nextInt();
+					mempoolPerOrigin = mempoolPerOrigin > 0 ? mempoolPerOrigin : perOrigin;
+					break;
+				case "mempoolMaxAge":
+					int age = reader.nextInt();
+					mempoolMaxAge = mempoolMaxAge > 0 ? mempoolMaxAge : age;
+					break;
+				case "blockMaxTransactions":
+					int blockTransactions = reader.nextInt();
+					blockMaxTransactions = blockMaxTransactions > 0 ? blockMaxTransactions : blockTransactions;
+					break;
+				case "blockMaxBytes":
+					long blockBytes = reader.nextLong();
+					blockMaxBytes = blockMaxBytes > 0 ? blockMaxBytes : blockBytes;
+					break;
+				case "blockInterval":
+					int interval = reader.nextInt();
+					blockInterval = blockInterval > 0 ? blockInterval : interval;
+					break;
+				case "retransmitWheel":
+					retransmitWheel = reader.nextBoolean() || retransmitWheel;
+					break;
+				case "waitingBlockIndex":
+					waitingBlockIndex = reader.nextBoolean() || waitingBlockIndex;
+					break;
+				case "priorityIngress":
+					priorityIngress = reader.nextBoolean() || priorityIngress;
+					break;
+				case "ackBatchWindow":
+					int window = reader.nextInt();
+					ackBatchWindow = ackBatchWindow > 0 ? ackBatchWindow : window;
+					break;
+				case "transactionInventory":
+					transactionInventory = reader.nextBoolean() || transactionInventory;
+					break;
+				case "stats":
+					stats = reader.nextBoolean() || stats;
+					break;
 				case "many_nodes":
 					reader.beginArray();
 					while(reader.hasNext()) {
@@ -113,6 +315,7 @@ public class Main {
 									int download = 0;
 									int trans = 0;
 									int minTrans = 0;
+									int joinAt = -1;
 									String style = null;
 									
 									while(reader.hasNext()) {
@@ -138,6 +341,9 @@ public class Main {
 											case "style":
 												style = reader.nextString();
 												break;
+											case "joinAt":
+												joinAt = reader.nextInt();
+												break;
 											default:
 												reader.nextString();
 										}
@@ -167,6 +373,10 @@ public class Main {
 											((SimulatedSalesTransactionNode) node).setStyle(style);
 										}
 										
+										if(joinAt >= 0) {
+											((SimulatedLateJoinNode) node).setJoinAt(joinAt);
+										}
+										
 										network.addNode(node);
 										network.addInitialAuth(node.getId(), permission);
 										multipleNodes.add(node);
@@ -255,7 +465,7 @@ public class Main {
 						multipleNodes.add(node);
 						
 						if(connCost != 0) {
-							network.nodeConnectionCosts.put(node.getId(), connCost);
+							network.setConnectionCost(node.getIndex(), connCost);
 						}
 						
 						reader.endObject();
@@ -354,6 +564,88 @@ public class Main {
 		
 		System.out.println("Scenario loaded successfully!");
 		
+		if(parallelism > 1) {
+			network.setParallelism(parallelism);
+			System.out.println("Executing nodes on "+parallelism+" threads.");
+		}
+		
+		if(peerSampling) {
+			network.setPeerSampling(true);
+			System.out.println("Sampling peers from nodes with free connection slots.");
+		}
+		
+		if(binaryWire) {
+			network.setBinaryWireFormat(true);
+			System.out.println("Accounting bandwidth with binary signal encoding.");
+		}
+		
+		if(stats) {
+			network.setStatistics(true);
+		}
+		
+		if(chunkSync) {
+			network.setChunkSync(true);
+			System.out.println("Syncing lagging nodes by chunks of blocks.");
+		}
+		
+		if(sharedBlocks) {
+			network.setSharedBlocks(true);
+			System.out.println("Sharing decoded blocks among all nodes.");
+		}
+		
+		if(merkleBlocks) {
+			network.setMerkleBlocks(true);
+			System.out.println("Hashing block headers with Merkle roots over transactions.");
+		}
+		
+		if(pruneDepth > 0) {
+			network.setPruneDepth(pruneDepth);
+			System.out.println("Pruning payloads of blocks in chunks buried by "+pruneDepth+" blocks on READ nodes.");
+		}
+		
+		if(mempoolTransactions > 0 || mempoolBytes > 0 || mempoolPerOrigin > 0 || mempoolMaxAge > 0) {
+			network.setMempoolLimits(mempoolTransactions, mempoolBytes, mempoolPerOrigin, mempoolMaxAge);
+			System.out.println(String.format("Bounding transaction pools to %d transactions, %d bytes, %d per publisher, %d ticks (0 is unlimited).",
+					mempoolTransactions, mempoolBytes, mempoolPerOrigin, mempoolMaxAge));
+		}
+		
+		if(blockMaxTransactions > 0 || blockMaxBytes > 0 || blockInterval > 0) {
+			network.setBlockLimits(blockMaxTransactions, blockMaxBytes, blockInterval);
+			System.out.println(String.format("Capping blocks to %d transactions, %d bytes, batching for %d ticks (0 is unlimited).",
+					blockMaxTransactions, blockMaxBytes, blockInterval));
+		}
+		
+		if(retransmitWheel) {
+			network.setRetransmitWheel(true);
+			System.out.println("Scheduling retransmissions of forwarded signals on timer wheels.");
+		}
+		
+		if(waitingBlockIndex) {
+			network.setWaitingBlockIndex(true);
+			System.out.println("Indexing waiting blocks, checking them when the chain or forger changes.");
+		}
+		
+		if(priorityIngress) {
+			network.setPriorityIngress(true);
+			System.out.println("Queueing incoming signals by class, parsing control, block and transaction signals in weighted turns.");
+		}
+		
+		if(ackBatchWindow > 0) {
+			network.setAckBatchWindow(ackBatchWindow);
+			System.out.println("Batching ACKs to each peer for "+ackBatchWindow+" ticks.");
+		}
+		
+		if(transactionInventory) {
+			network.setTransactionInventory(true);
+			System.out.println("Announcing transactions by hash, payloads are sent on request.");
+		}
+		
+		if(headless) {
+			networkGraphs.clear();
+			nodeGraphs.clear();
+			System.out.println("Running headless, charts and tick pacing are disabled.");
+		}
+		
 		for(SimulatedNode node: multipleNodes) {
 			node.addNetwork(network);
 		}
@@ -364,7 +656,7 @@ public class Main {
 				SimulatedNode from = network.nodes.getOrDefault(data[0], null);
 				SimulatedNode to = network.nodes.getOrDefault(data[1], null);
 				
-				int delay = network.getConnectionDelay(from.getId(), to.getId());
+				int delay = network.getConnectionDelay(from.getIndex(), to.getIndex());
 				
 				if(data.length == 4) {
 					delay = Integer.parseInt(data[3]);
@@ -372,20 +664,20 @@ public class Main {
 				
 				switch(data[2]) {
 					case "U":
-						to.establishDownloadConnection(from.getId(), delay);
-						from.activeOutgoingConnections.put(to.getId(), delay);
+						to.establishDownloadConnection(from.getIndex(), delay);
+						from.activeOutgoingConnections.put(to.getIndex(), delay);
 						break;
 					case "D":
-						to.establishUploadConnection(from.getId(), delay);
-						from.activeIncomingConnections.put(to.getId(), delay);
+						to.establishUploadConnection(from.getIndex(), delay);
+						from.activeIncomingConnections.put(to.getIndex(), delay);
 						break;
 					case "UD":
 					case "DU":
-						to.establishDownloadConnection(from.getId(), delay);
-						to.establishUploadConnection(from.getId(), delay);
+						to.establishDownloadConnection(from.getIndex(), delay);
+						to.establishUploadConnection(from.getIndex(), delay);
 						
-						from.activeOutgoingConnections.put(to.getId(), delay);
-						from.activeIncomingConnections.put(to.getId(), delay);
+						from.activeOutgoingConnections.put(to.getIndex(), delay);
+						from.activeIncomingConnections.put(to.getIndex(), delay);
 						break;
 				}
 			}
@@ -656,8 +948,14 @@ public class Main {
 	    	}
 		} catch (InterruptedException e) {}
 	    
+	    // wall-clock pacing only makes sense when there are charts to watch
+	    network.setPaced(charts.size() > 0 || charts2.size() > 0);
+	    
 	    System.out.println("Simulating network for "+limit+" ticks ...");
 	    
+	    int startTick = network.getCurrentTick();
+	    long startTime = System.nanoTime();
+	    
 	    while(true) {
 	    	network.simulate();
 	    	if(network.getCurrentTick() % 1000 == 0) {
@@ -735,7 +1033,9 @@ public class Main {
 				}
 			}
 	    	
-	    	network_ticks.add((double)network.currentTick);
+	    	if(charts2.size() > 0) {
+	    		network_ticks.add((double)network.currentTick);
+	    	}
 	    	
 	    	for(String graph_id: nodeGraphs) {
 				switch(graph_id) {
@@ -824,6 +1124,8 @@ public class Main {
 			}
 	    }
 	    
+	    double elapsed = (System.nanoTime() - startTime) / 1e9;
+	    
 	    System.out.println("Simulation finished.");
 	    
 	    network.log.getComparisonStats();
@@ -845,6 +1147,88 @@ public class Main {
 	    System.out.printf("%1$30s %2$10d %3$10d %4$10d %5$10d %6$10d\n", "Blocks accepted", Main.mean(blocksAccepted), Main.mode(blocksAccepted), Main.median(blocksAccepted), Main.min(blocksAccepted), Main.max(blocksAccepted));
 	    System.out.printf("%1$30s %2$10d %3$10d %4$10d %5$10d %6$10d\n", "Transactions in blocks", Main.mean(blockTransactionCounts), Main.mode(blockTransactionCounts), Main.median(blockTransactionCounts), Main.min(blockTransactionCounts), Main.max(blockTransactionCounts));
 	    System.out.printf("%1$30s %2$10d %3$10d %4$10d %5$10d %6$10d\n", "Block sizes (bits)", Main.mean(blockSizes), Main.mode(blockSizes), Main.median(blockSizes), Main.min(blockSizes), Main.max(blockSizes));
+	    
+	    
+	    if(stats) {
+	    	Main.printRunStatistics(network, network.getCurrentTick() - startTick, elapsed, blocksAccepted);
+	    }
+	}
+	
+	/**
+	 * Prints run time, hashing work, bandwidth and statistics of enabled modes (see --stats)
+	 * @param network
+	 * @param ticks, simulated ticks
+	 * @param elapsed, wall-clock seconds of the simulation
+	 * @param blocksAccepted, chain heights of nodes
+	 */
+	private static void printRunStatistics(SimulatedNetwork network, int ticks, double elapsed, ArrayList<Integer> blocksAccepted) {
+		System.out.printf("Simulated %d ticks in %.2f s, %.0f ticks/s, %.0f events/s\n", ticks, elapsed, ticks / elapsed, network.getProcessedEvents() / elapsed);
+		
+		// hashing work, relative to the longest chain
+		int chainHeight = blocksAccepted.size() > 0 ? Main.max(blocksAccepted) : 0;
+		System.out.printf("Computed %d SHA-256 hashes, %.0f per block\n", Sha256.getComputedCount(), Sha256.getComputedCount() / (double)Math.max(chainHeight, 1));
+		
+		// bandwidth of the binary wire format against text
+		long textBytes = network.getSentBytes(false);
+		long binaryBytes = network.getSentBytes(true);
+		System.out.printf("Sent %d bytes of signals as text, %d as binary (%.1f%% of text)\n", textBytes, binaryBytes, 100.0 * binaryBytes / Math.max(textBytes, 1));
+		System.out.printf("Sent %d signals, %d ACKs and %d ACK batches\n", network.getSentSignals(-1), network.getSentSignals(NodeSignal.ACK_SIGNAL), network.getSentSignals(NodeSignal.ACK_BATCH_SIGNAL));
+		
+		// transaction payloads against transactions added to pools, 1 per addition means no node received a payload twice
+		long payloads = network.getSentSignals(NodeSignal.NEW_TRANSACTION_SIGNAL);
+		long payloadBytes = network.getSentBytes(NodeSignal.NEW_TRANSACTION_SIGNAL);
+		long poolAdditions = 0;
+		
+		for(SimulatedNode node: network.nodes.values()) {
+			poolAdditions += node.transactionPool.getAdded();
+		}
+		
+		System.out.printf("Sent %d transaction payloads (%d bytes) for %d transactions added to pools, %.2f payloads and %.0f bytes per addition\n",
+				payloads, payloadBytes, poolAdditions, payloads / (double)Math.max(poolAdditions, 1), payloadBytes / (double)Math.max(poolAdditions, 1));
+		System.out.printf("Sent %d transaction announcements (%d bytes) and %d requests (%d bytes)\n",
+				network.getSentSignals(NodeSignal.TRANSACTION_ANNOUNCE_SIGNAL), network.getSentBytes(NodeSignal.TRANSACTION_ANNOUNCE_SIGNAL),
+				network.getSentSignals(NodeSignal.TRANSACTION_REQUEST_SIGNAL), network.getSentBytes(NodeSignal.TRANSACTION_REQUEST_SIGNAL));
+		
+		if(network.getBlockStore() != null) {
+			System.out.printf("Shared block store holds %d decoded blocks near the chain tips, %d in chains of %d nodes\n", network.getBlockStore().getDecodedCount(), network.getBlockStore().getBlockCount(), network.nodes.size());
+		}
+		
+		if(network.mempoolTransactions > 0 || network.mempoolBytes > 0 || network.mempoolPerOrigin > 0 || network.mempoolMaxAge > 0) {
+			long pooled = 0, peakBytes = 0;
+			int peakTransactions = 0, added = 0, confirmed = 0, evicted = 0, expired = 0, rejected = 0;
+			
+			for(SimulatedNode node: network.nodes.values()) {
+				pooled += node.transactionPool.size();
+				peakTransactions = Math.max(peakTransactions, node.transactionPool.getPeakTransactions());
+				peakBytes = Math.max(peakBytes, node.transactionPool.getPeakBytes());
+				added += node.transactionPool.getAdded();
+				confirmed += node.transactionPool.getConfirmed();
+				evicted += node.transactionPool.getEvicted();
+				expired += node.transactionPool.getExpired();
+				rejected += node.transactionPool.getRejected();
+			}
+			
+			System.out.printf("Transaction pools hold %d transactions, peak %d transactions and %d bytes in one node\n", pooled, peakTransactions, peakBytes);
+			System.out.printf("Pooled %d transactions: %d confirmed, %d evicted when full, %d evicted by age, %d rejected over quota\n", added, confirmed, evicted, expired, rejected);
+		}
+		
+		if(network.priorityIngress) {
+			for(int c = 0; c < IngressQueues.CLASSES; c++) {
+				long dequeued = 0, waitTicks = 0;
+				int queued = 0, peakDepth = 0, maxWait = 0;
+				
+				for(SimulatedNode node: network.nodes.values()) {
+					dequeued += node.waitingSignals.getDequeued(c);
+					waitTicks += node.waitingSignals.getWaitTicks(c);
+					queued += node.waitingSignals.getDepth(c);
+					peakDepth = Math.max(peakDepth, node.waitingSignals.getPeakDepth(c));
+					maxWait = Math.max(maxWait, node.waitingSignals.getMaxWait(c));
+				}
+				
+				System.out.printf("Ingress %s signals: %d parsed, %.1f ticks mean wait, %d max wait, %d queued, peak depth %d in one node\n",
+						IngressQueues.CLASS_NAMES[c], dequeued, waitTicks / (double)Math.max(dequeued, 1), maxWait, queued, peakDepth);
+			}
+		}
 	}
 	
 	public static int mean(ArrayList<Integer> values) {
@@ -0,0 +1,340 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Pool of transactions waiting for a block, by hash.
+ * Unbounded by default, limits on transactions, bytes (length of Transaction.toString), transactions of one origin
+ * and age in ticks can be set (see SimulatedNetwork.setMempoolLimits). Transactions are kept in arrival order,
+ * the oldest ones are evicted first when the pool is full or too old, transactions of origins over their quota are rejected.
+ *
+ * Entries are linked in arrival order, so that eviction, expiry and removal of confirmed transactions are O(1).
+ *
+ * With block limits (see setBlockLimits) the pool also keeps the candidate of the next block, ie. the oldest
+ * transactions fitting into a block, updated as transactions arrive and leave, so a block is taken without selection.
+ */
+public class Mempool {
+	private static class Entry {
+		private final Hash256 hash;
+		private final Transaction transaction;
+		private final int size;
+		private final int arrival;
+		
+		private Entry older;
+		private Entry newer;
+		private boolean candidate = false;
+		
+		private Entry(Hash256 hash, Transaction transaction, int arrival) {
+			this.hash = hash;
+			this.transaction = transaction;
+			this.size = transaction.toString().length();
+			this.arrival = arrival;
+		}
+	}
+	
+	private HashMap<Hash256, Entry> entries = new HashMap<>();
+	private HashMap<String, Integer> originCounts = new HashMap<>();
+	private Entry oldest = null;
+	private Entry newest = null;
+	private long bytes = 0;
+	
+	// limits, 0 means unlimited
+	private int maxTransactions = 0;
+	private long maxBytes = 0;
+	private int maxPerOrigin = 0;
+	private int maxAge = 0;
+	
+	// limits of the next block, 0 means unlimited, the candidate is the run of oldest entries up to candidateEnd
+	private int blockTransactions = 0;
+	private long blockBytes = 0;
+	private Entry candidateEnd = null;
+	private int candidateCount = 0;
+	private long candidateBytes = 0;
+	
+	// occupancy and eviction metrics
+	private int added = 0;
+	private int confirmed = 0;
+	private int evicted = 0;
+	private int expired = 0;
+	private int rejected = 0;
+	private int peakTransactions = 0;
+	private long peakBytes = 0;
+	
+	public Mempool() {
+	
+	}
+	
+	/**
+	 * @param transactions, most transactions in the pool
+	 * @param bytes, most bytes of transactions in the pool
+	 * @param per_origin, most transactions of one origin in the pool
+	 * @param age, ticks after which a transaction is evicted
+	 */
+	public void setLimits(int transactions, long bytes, int per_origin, int age) {
+		this.maxTransactions = Math.max(transactions, 0);
+		this.maxBytes = Math.max(bytes, 0);
+		this.maxPerOrigin = Math.max(per_origin, 0);
+		this.maxAge = Math.max(age, 0);
+	}
+	
+	/**
+	 * @param transactions, most transactions in a block
+	 * @param bytes, most bytes of payload in a block, counting the "||" delimiter of each transaction
+	 */
+	public void setBlockLimits(int transactions, long bytes) {
+		this.blockTransactions = Math.max(transactions, 0);
+		this.blockBytes = Math.max(bytes, 0);
+		
+		// reassemble the candidate with new limits
+		for(Entry entry = this.oldest; entry != null; entry = entry.newer) {
+			entry.candidate = false;
+		}
+		
+		this.candidateEnd = null;
+		this.candidateCount = 0;
+		this.candidateBytes = 0;
+		this.extendCandidate();
+	}
+	
+	/**
+	 * @return boolean, true if any limit is set
+	 */
+	public boolean isBounded() {
+		return this.maxTransactions > 0 || this.maxBytes > 0 || this.maxPerOrigin > 0 || this.maxAge > 0;
+	}
+	
+	/**
+	 * @return boolean, true if any block limit is set
+	 */
+	public boolean isBlockLimited() {
+		return this.blockTransactions > 0 || this.blockBytes > 0;
+	}
+	
+	/**
+	 * Adds the transaction, evicting the oldest transactions if the pool is full
+	 * @param hash
+	 * @param transaction
+	 * @param tick, arrival of the transaction
+	 * @return boolean, false if the transaction was already in the pool or was rejected
+	 */
+	public boolean add(Hash256 hash, Transaction transaction, int tick) {
+		if(this.entries.containsKey(hash)) {
+			return false;
+		}
+		
+		// expired transactions no longer count against the quota of their origin
+		this.expire(tick);
+		
+		Entry entry = new Entry(hash, transaction, tick);
+		
+		if((this.maxBytes > 0 && entry.size > this.maxBytes) || (this.maxPerOrigin > 0 && this.originCounts.getOrDefault(transaction.getOrigin(), 0) >= this.maxPerOrigin)) {
+			this.rejected++;
+			return false;
+		}
+		
+		while(this.oldest != null && ((this.maxTransactions > 0 && this.entries.size() >= this.maxTransactions) || (this.maxBytes > 0 && this.bytes + entry.size > this.maxBytes))) {
+			this.unlink(this.oldest);
+			this.evicted++;
+		}
+		
+		this.entries.put(hash, entry);
+		
+		entry.older = this.newest;
+		
+		if(this.newest != null) {
+			this.newest.newer = entry;
+		} else {
+			this.oldest = entry;
+		}
+		
+		this.newest = entry;
+		this.bytes += entry.size;
+		this.added++;
+		
+		// older entries are all in the candidate when it ends at the previous newest entry
+		if(this.candidateEnd == entry.older) {
+			this.extendCandidate();
+		}
+		
+		if(this.maxPerOrigin > 0) {
+			this.originCounts.merge(transaction.getOrigin(), 1, Integer::sum);
+		}
+		
+		this.peakTransactions = Math.max(this.peakTransactions, this.entries.size());
+		this.peakBytes = Math.max(this.peakBytes, this.bytes);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes a transaction confirmed by a block
+	 * @param hash
+	 * @return boolean, true if the transaction was in the pool
+	 */
+	public boolean remove(Hash256 hash) {
+		Entry entry = this.entries.get(hash);
+		
+		if(entry == null) {
+			return false;
+		}
+		
+		this.unlink(entry);
+		this.confirmed++;
+		
+		return true;
+	}
+	
+	/**
+	 * Evicts transactions older than the age limit
+	 * @param tick, current tick
+	 */
+	public void expire(int tick) {
+		if(this.maxAge == 0) {
+			return;
+		}
+		
+		while(this.oldest != null && this.oldest.arrival + this.maxAge < tick) {
+			this.unlink(this.oldest);
+			this.expired++;
+		}
+	}
+	
+	private void unlink(Entry entry) {
+		this.entries.remove(entry.hash);
+		
+		if(entry.older != null) {
+			entry.older.newer = entry.newer;
+		} else {
+			this.oldest = entry.newer;
+		}
+		
+		if(entry.newer != null) {
+			entry.newer.older = entry.older;
+		} else {
+			this.newest = entry.older;
+		}
+		
+		if(entry.candidate) {
+			entry.candidate = false;
+			this.candidateCount--;
+			this.candidateBytes -= entry.size + 2;
+			
+			if(this.candidateEnd == entry) {
+				this.candidateEnd = entry.older;
+			}
+		}
+		
+		entry.older = null;
+		entry.newer = null;
+		this.bytes -= entry.size;
+		
+		this.extendCandidate();
+		
+		if(this.maxPerOrigin > 0) {
+			this.originCounts.computeIfPresent(entry.transaction.getOrigin(), (origin, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+	
+	/**
+	 * Adds the oldest entries after the candidate while they fit into a block, a transaction over the byte limit fills a block alone
+	 */
+	private void extendCandidate() {
+		if(!this.isBlockLimited()) {
+			return;
+		}
+		
+		Entry next = this.candidateEnd != null ? this.candidateEnd.newer : this.oldest;
+		
+		while(next != null && (this.blockTransactions == 0 || this.candidateCount < this.blockTransactions)
+				&& (this.blockBytes == 0 || this.candidateCount == 0 || this.candidateBytes + next.size + 2 <= this.blockBytes)) {
+			next.candidate = true;
+			this.candidateCount++;
+			this.candidateBytes += next.size + 2;
+			this.candidateEnd = next;
+			next = next.newer;
+		}
+	}
+	
+	/**
+	 * @return boolean, true if no further transaction fits into the next block
+	 */
+	public boolean isCandidateFull() {
+		return this.isBlockLimited() && this.candidateEnd != this.newest;
+	}
+	
+	public int getCandidateCount() {
+		return this.isBlockLimited() ? this.candidateCount : this.entries.size();
+	}
+	
+	/**
+	 * @return List<Transaction>, transactions for the next block, in arrival order if the pool or blocks are bounded
+	 */
+	public List<Transaction> getTransactions() {
+		ArrayList<Transaction> transactions = new ArrayList<>(this.getCandidateCount());
+		
+		if(this.isBlockLimited()) {
+			for(Entry entry = this.oldest; entry != null && entry.candidate; entry = entry.newer) {
+				transactions.add(entry.transaction);
+			}
+		} else if(this.isBounded()) {
+			for(Entry entry = this.oldest; entry != null; entry = entry.newer) {
+				transactions.add(entry.transaction);
+			}
+		} else {
+			// unbounded pools keep the order blocks were always built in
+			for(Entry entry: this.entries.values()) {
+				transactions.add(entry.transaction);
+			}
+		}
+		
+		return transactions;
+	}
+	
+	/**
+	 * @param hash
+	 * @return Transaction | null if not in the pool
+	 */
+	public Transaction getTransaction(Hash256 hash) {
+		Entry entry = this.entries.get(hash);
+		
+		return entry != null ? entry.transaction : null;
+	}
+	
+	public int size() {
+		return this.entries.size();
+	}
+	
+	public long getBytes() {
+		return this.bytes;
+	}
+	
+	public int getAdded() {
+		return this.added;
+	}
+	
+	public int getConfirmed() {
+		return this.confirmed;
+	}
+	
+	public int getEvicted() {
+		return this.evicted;
+	}
+	
+	public int getExpired() {
+		return this.expired;
+	}
+	
+	public int getRejected() {
+		return this.rejected;
+	}
+	
+	public int getPeakTransactions() {
+		return this.peakTransactions;
+	}
+	
+	public long getPeakBytes() {
+		return this.peakBytes;
+	}
+}
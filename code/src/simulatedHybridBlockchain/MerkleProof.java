@@ -0,0 +1,114 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inclusion path of one leaf in a MerkleTree, encoded as "index;leaf_count;sibling,sibling,...".
+ * Leaf count tells on which levels the path has no sibling (see MerkleTree).
+ */
+public class MerkleProof {
+	private final int index;
+	private final int leafCount;
+	private final List<Hash256> siblings;
+	
+	public MerkleProof(int index, int leafCount, List<Hash256> siblings) {
+		this.index = index;
+		this.leafCount = leafCount;
+		this.siblings = siblings;
+	}
+	
+	/**
+	 * @param encoded, as from toString()
+	 * @return MerkleProof | null if malformed
+	 */
+	public static MerkleProof decode(String encoded) {
+		String[] parts = encoded.split(";", 3);
+		
+		if(parts.length != 3) {
+			return null;
+		}
+		
+		try {
+			ArrayList<Hash256> siblings = new ArrayList<>();
+			
+			for(String sibling: parts[2].isEmpty() ? new String[0] : parts[2].split(",")) {
+				Hash256 hash = Hash256.fromHex(sibling);
+				
+				if(hash == null) {
+					return null;
+				}
+				
+				siblings.add(hash);
+			}
+			
+			return new MerkleProof(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), siblings);
+		} catch(NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @param leaf
+	 * @return Hash256, root of the tree the leaf would be in at index | null if the path does not fit the leaf count
+	 */
+	public Hash256 computeRoot(Hash256 leaf) {
+		if(this.index < 0 || this.index >= this.leafCount) {
+			return null;
+		}
+		
+		Hash256 node = leaf;
+		int position = this.index;
+		int width = this.leafCount;
+		int used = 0;
+		
+		while(width > 1) {
+			if((position ^ 1) < width) {
+				if(used == this.siblings.size()) {
+					return null;
+				}
+				
+				Hash256 sibling = this.siblings.get(used++);
+				node = (position & 1) == 0 ? Hash256.combine(node, sibling) : Hash256.combine(sibling, node);
+			}
+			
+			position >>= 1;
+			width = (width + 1) / 2;
+		}
+		
+		return used == this.siblings.size() ? node : null;
+	}
+	
+	/**
+	 * @param leaf
+	 * @param root
+	 * @return boolean, true if the leaf is in the tree with given root
+	 */
+	public boolean verify(Hash256 leaf, Hash256 root) {
+		return root != null && root.equals(this.computeRoot(leaf));
+	}
+	
+	public int getIndex() {
+		return this.index;
+	}
+	
+	public int getLeafCount() {
+		return this.leafCount;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder encoded = new StringBuilder();
+		encoded.append(this.index).append(';').append(this.leafCount).append(';');
+		
+		for(int a = 0; a < this.siblings.size(); a++) {
+			if(a > 0) {
+				encoded.append(',');
+			}
+			
+			encoded.append(this.siblings.get(a));
+		}
+		
+		return encoded.toString();
+	}
+}
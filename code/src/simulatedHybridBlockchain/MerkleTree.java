@@ -0,0 +1,80 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle tree over transaction hashes of a block (see Block.getMerkleRoot).
+ * Pairs of nodes are hashed by Hash256.combine, a node without pair is carried to the next level unchanged,
+ * so that no two different lists of leaves share a root by duplicating the last one.
+ */
+public class MerkleTree {
+	// leaves first, root last
+	private final ArrayList<Hash256[]> levels = new ArrayList<>();
+	
+	public MerkleTree(List<Hash256> leaves) {
+		Hash256[] level = leaves.toArray(new Hash256[0]);
+		this.levels.add(level);
+		
+		while(level.length > 1) {
+			Hash256[] next = new Hash256[(level.length + 1) / 2];
+			
+			for(int a = 0; a < next.length; a++) {
+				next[a] = 2*a + 1 < level.length ? Hash256.combine(level[2*a], level[2*a + 1]) : level[2*a];
+			}
+			
+			this.levels.add(next);
+			level = next;
+		}
+	}
+	
+	/**
+	 * @return Hash256 | null if there are no leaves
+	 */
+	public Hash256 getRoot() {
+		Hash256[] top = this.levels.get(this.levels.size() - 1);
+		
+		return top.length > 0 ? top[0] : null;
+	}
+	
+	public int getLeafCount() {
+		return this.levels.get(0).length;
+	}
+	
+	/**
+	 * @param leaf
+	 * @return int, position of the first equal leaf | -1 if not found
+	 */
+	public int indexOf(Hash256 leaf) {
+		Hash256[] leaves = this.levels.get(0);
+		
+		for(int a = 0; a < leaves.length; a++) {
+			if(leaves[a].equals(leaf)) {
+				return a;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * @param index, position of the leaf
+	 * @return MerkleProof, siblings on the path from the leaf to the root
+	 */
+	public MerkleProof getProof(int index) {
+		ArrayList<Hash256> siblings = new ArrayList<>();
+		int position = index;
+		
+		for(int level = 0; level < this.levels.size() - 1; level++) {
+			Hash256[] nodes = this.levels.get(level);
+			
+			if((position ^ 1) < nodes.length) {
+				siblings.add(nodes[position ^ 1]);
+			}
+			
+			position >>= 1;
+		}
+		
+		return new MerkleProof(index, this.getLeafCount(), siblings);
+	}
+}
@@ -0,0 +1,190 @@
+package simulatedHybridBlockchain;
+
+import java.util.Arrays;
+
+/**
+ * Map of dense node indexes (see SimulatedNetwork.getNodeIndex) to int values, without boxing.
+ * Iterates in insertion order like LinkedHashMap, re-putting an existing key keeps its position.
+ *
+ * Entries are stored in insertion order, removed entries are only marked and dropped on the next rehash.
+ * Lookups go through an open addressing table of entry positions.
+ */
+public class NodeIndexMap {
+	private static final int REMOVED = -1;
+	
+	private int[] keys;
+	private int[] values;
+	private int entries = 0;
+	private int size = 0;
+	
+	// entry position + 1 for each used slot, 0 means empty
+	private int[] table;
+	private int mask;
+	
+	public NodeIndexMap() {
+		this(4);
+	}
+	
+	public NodeIndexMap(int capacity) {
+		this.allocate(Math.max(capacity, 2));
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean containsKey(int key) {
+		return this.find(key) != -1;
+	}
+	
+	public int get(int key, int defaultValue) {
+		int position = this.find(key);
+		return position != -1 ? this.values[position] : defaultValue;
+	}
+	
+	public void put(int key, int value) {
+		if(key < 0) {
+			throw new IllegalArgumentException("Invalid node index "+key);
+		}
+		
+		int position = this.find(key);
+		
+		if(position != -1) {
+			this.values[position] = value;
+			return;
+		}
+		
+		if(this.entries == this.keys.length) {
+			// drop removed entries, grow only when actually full
+			this.rehash(this.size + 1 > this.keys.length / 2 ? this.keys.length * 2 : this.keys.length);
+		}
+		
+		this.keys[this.entries] = key;
+		this.values[this.entries] = value;
+		this.entries++;
+		this.size++;
+		
+		this.insertSlot(key, this.entries);
+	}
+	
+	/**
+	 * @param key
+	 * @return boolean, true if key was present
+	 */
+	public boolean remove(int key) {
+		int position = this.find(key);
+		
+		if(position == -1) {
+			return false;
+		}
+		
+		// table slot keeps pointing at the entry, it is skipped by lookups from now on
+		this.keys[position] = REMOVED;
+		this.size--;
+		
+		return true;
+	}
+	
+	public void clear() {
+		Arrays.fill(this.table, 0);
+		this.entries = 0;
+		this.size = 0;
+	}
+	
+	/**
+	 * @return int[], snapshot of keys in insertion order
+	 */
+	public int[] keys() {
+		int[] result = new int[this.size];
+		int index = 0;
+		
+		for(int a = 0; a < this.entries; a++) {
+			if(this.keys[a] != REMOVED) {
+				result[index++] = this.keys[a];
+			}
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		
+		for(int a = 0; a < this.entries; a++) {
+			if(this.keys[a] != REMOVED) {
+				if(builder.length() > 1) {
+					builder.append(", ");
+				}
+				
+				builder.append(this.keys[a]).append('=').append(this.values[a]);
+			}
+		}
+		
+		return builder.append('}').toString();
+	}
+	
+	private int find(int key) {
+		if(key < 0) {
+			// not a node index, also never matches removed entries
+			return -1;
+		}
+		
+		int slot = this.slotOf(key);
+		
+		while(this.table[slot] != 0) {
+			int position = this.table[slot] - 1;
+			
+			if(this.keys[position] == key) {
+				return position;
+			}
+			
+			slot = (slot + 1) & this.mask;
+		}
+		
+		return -1;
+	}
+	
+	private int slotOf(int key) {
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & this.mask;
+	}
+	
+	private void insertSlot(int key, int entry) {
+		int slot = this.slotOf(key);
+		
+		while(this.table[slot] != 0) {
+			slot = (slot + 1) & this.mask;
+		}
+		
+		this.table[slot] = entry;
+	}
+	
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new int[capacity];
+		
+		// table is kept at most half full
+		this.table = new int[Integer.highestOneBit(capacity - 1) << 2];
+		this.mask = this.table.length - 1;
+	}
+	
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		int oldEntries = this.entries;
+		
+		this.allocate(capacity);
+		this.entries = 0;
+		
+		for(int a = 0; a < oldEntries; a++) {
+			if(oldKeys[a] != REMOVED) {
+				this.keys[this.entries] = oldKeys[a];
+				this.values[this.entries] = oldValues[a];
+				this.entries++;
+				
+				this.insertSlot(oldKeys[a], this.entries);
+			}
+		}
+	}
+}
@@ -1,9 +1,6 @@
 package simulatedHybridBlockchain;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
 
 public abstract class NodeSignal {
 	public static final int ACTIVE_SIGNAL = 0;
@@ -23,18 +20,54 @@ public abstract class NodeSignal {
 	public static final int REQUEST_WAIT_SIGNAL = 9;
 	
 	public static final int BLOCK_RESPONSE_SIGNAL = 10;
+	public static final int BLOCK_CHUNK_RESPONSE_SIGNAL = 11;
+	
+	public static final int REQUEST_REDIRECT_SIGNAL = 12;
+	
+	public static final int LIGHT_PROOF_REQUEST_SIGNAL = 13;
+	public static final int LIGHT_PROOF_RESPONSE_SIGNAL = 14;
+	
+	public static final int ACK_BATCH_SIGNAL = 15;
+	
+	public static final int TRANSACTION_ANNOUNCE_SIGNAL = 16;
+	public static final int TRANSACTION_REQUEST_SIGNAL = 17;
+	
+	// amount of signal types, for counters by type
+	public static final int TYPE_COUNT = 18;
 	
 	protected int type;
 	protected String origin;
 	protected String payload;
 	protected String forwardOrigin;
 	
+	// memoized getHash(), cleared by setPayload()
+	// one signal is parsed by several nodes, possibly on different threads; a String is immutable,
+	// so a racing thread at worst computes the same hash again
+	private Hash256 hash = null;
+	
+	// payload parsed by getPayloadHash(), cleared by setPayload()
+	private Hash256 payloadHash = null;
+	
+	// encoded sizes in bytes, computed once until the payload changes
+	private int textSize = -1;
+	private int binarySize = -1;
+	
 	public NodeSignal(String origin, String payload) {
 		this.origin = origin;
 		this.payload = payload;
 		this.forwardOrigin = origin;
 	}
 	
+	/**
+	 * Signal whose payload is a hash of a signal or block (ACK, DENY, WAIT)
+	 * @param origin
+	 * @param payload
+	 */
+	public NodeSignal(String origin, Hash256 payload) {
+		this(origin, payload.toString());
+		this.payloadHash = payload;
+	}
+	
 	public int getType() {
 		return this.type;
 	}
@@ -62,6 +95,10 @@ public abstract class NodeSignal {
 	
 	public void setPayload(String payload) {
 		this.payload = payload;
+		this.payloadHash = null;
+		this.textSize = -1;
+		this.binarySize = -1;
+		this.hash = null;
 	}
 	
 	/**
@@ -76,18 +113,62 @@ public abstract class NodeSignal {
 		return this.type+" "+this.origin+" "+this.payload;
 	}
 	
-	public String getHash() {
-		try {
-			MessageDigest hash = MessageDigest.getInstance("SHA-256");
-			
-			String sig = this.toString();
-			hash.update(sig.getBytes("UTF-8"));
-			
-			return String.format("%064x", new BigInteger(1, hash.digest()));
-		} catch (NoSuchAlgorithmException|UnsupportedEncodingException e) {
-			e.printStackTrace();
+	/**
+	 * @return int, size of UTF-8 encoded toString() in bytes
+	 */
+	public int getTextSize() {
+		int size = this.textSize;
+		
+		if(size == -1) {
+			size = this.toString().getBytes(StandardCharsets.UTF_8).length;
+			this.textSize = size;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * @param network, resolves node ids to indexes
+	 * @return int, size of binary encoding in bytes (see NodeSignalCodec)
+	 */
+	public int getBinarySize(SimulatedNetwork network) {
+		int size = this.binarySize;
+		
+		if(size == -1) {
+			size = NodeSignalCodec.encode(this, network).length;
+			this.binarySize = size;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Returns SHA-256 hash of toString(), computed once until the payload changes
+	 * @return Hash256
+	 */
+	public Hash256 getHash() {
+		Hash256 hash = this.hash;
+		
+		if(hash == null) {
+			hash = Hash256.digest(this.toString());
+			this.hash = hash;
+		}
+		
+		return hash;
+	}
+	
+	/**
+	 * Returns payload parsed as a hash, for signals that refer to another signal or block
+	 * @return Hash256 | null if payload is not a hash
+	 */
+	public Hash256 getPayloadHash() {
+		Hash256 hash = this.payloadHash;
+		
+		if(hash == null) {
+			hash = Hash256.fromHex(this.payload);
+			this.payloadHash = hash;
 		}
 		
-		return null;
+		return hash;
 	}
 }
@@ -6,4 +6,9 @@ public class NodeSignalAck extends NodeSignal {
 		super(origin, response_to.getHash());
 		this.type = NodeSignal.ACK_SIGNAL;
 	}
+	
+	public NodeSignalAck(String origin, Hash256 response_to) {
+		super(origin, response_to);
+		this.type = NodeSignal.ACK_SIGNAL;
+	}
 }
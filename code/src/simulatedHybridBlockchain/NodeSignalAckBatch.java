@@ -0,0 +1,68 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ACKs of all signals received from one peer within a window (see SimulatedNetwork.setAckBatchWindow),
+ * payload is structured as "hash,hash,..." of the acknowledged signals in order they were parsed.
+ */
+public final class NodeSignalAckBatch extends NodeSignal {
+	// most hashes in one batch, a full batch is sent without waiting for the window
+	public static final int LIMIT = 256;
+	
+	private List<Hash256> hashes = null;
+	
+	public NodeSignalAckBatch(String origin, String payload) {
+		super(origin, payload);
+		this.type = NodeSignal.ACK_BATCH_SIGNAL;
+	}
+	
+	public NodeSignalAckBatch(String origin, List<Hash256> hashes) {
+		this(origin, NodeSignalAckBatch.encode(hashes));
+		this.hashes = new ArrayList<>(hashes);
+	}
+	
+	private static String encode(List<Hash256> hashes) {
+		StringBuilder payload = new StringBuilder(hashes.size() * 65);
+		
+		for(Hash256 hash: hashes) {
+			if(payload.length() > 0) {
+				payload.append(',');
+			}
+			
+			payload.append(hash);
+		}
+		
+		return payload.toString();
+	}
+	
+	/**
+	 * @return List<Hash256>, acknowledged signal hashes, malformed ones are skipped
+	 */
+	public List<Hash256> getHashes() {
+		List<Hash256> hashes = this.hashes;
+		
+		if(hashes == null) {
+			hashes = new ArrayList<>();
+			
+			for(String hex: this.getPayload().split(",")) {
+				Hash256 hash = Hash256.fromHex(hex);
+				
+				if(hash != null) {
+					hashes.add(hash);
+				}
+			}
+			
+			this.hashes = hashes;
+		}
+		
+		return hashes;
+	}
+	
+	@Override
+	public void setPayload(String payload) {
+		super.setPayload(payload);
+		this.hashes = null;
+	}
+}
@@ -3,7 +3,7 @@ package simulatedHybridBlockchain;
 public class NodeSignalActive extends NodeSignal {
 
 	public NodeSignalActive(String origin) {
-		super(origin, null);
+		super(origin, (String) null);
 		this.type = NodeSignal.ACTIVE_SIGNAL;
 	}
 }
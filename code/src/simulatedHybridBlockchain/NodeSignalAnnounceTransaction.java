@@ -0,0 +1,12 @@
+package simulatedHybridBlockchain;
+
+/**
+ * Announces a transaction by its hash, peers that have not seen it ask for the payload (TRANSACTION_REQUEST),
+ * used instead of forwarding NEW_TRANSACTION payloads (see SimulatedNetwork.setTransactionInventory)
+ */
+public final class NodeSignalAnnounceTransaction extends NodeSignal {
+	public NodeSignalAnnounceTransaction(String origin, Hash256 payload) {
+		super(origin, payload);
+		this.type = NodeSignal.TRANSACTION_ANNOUNCE_SIGNAL;
+	}
+}
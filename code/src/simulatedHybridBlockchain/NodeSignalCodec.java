@@ -0,0 +1,132 @@
+package simulatedHybridBlockchain;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Binary wire encoding of signals, used to measure bandwidth of a compact format next to toString() text.
+ *
+ * Layout: one byte with the signal type and payload kind, varint of the origin node, then the payload:
+ * nothing (null payload), 32 raw bytes (payload is a hash, eg. ACK), a block (see writeBlock),
+ * varint count and raw hashes (ACK_BATCH) or length-prefixed UTF-8 text. Node ids are written as varint of index + 1, 0 followed by text
+ * for ids that are not nodes of the network (eg. "INIT").
+ * Forward origin is not encoded, a real receiver knows which node sent the signal.
+ */
+public final class NodeSignalCodec {
+	private static final int PAYLOAD_NULL = 0x40;
+	private static final int PAYLOAD_HASH = 0x80;
+	private static final int PAYLOAD_BLOCK = 0xC0;
+	
+	private static final int HASH_TEXT = 0;
+	private static final int HASH_RAW = 1;
+	
+	private NodeSignalCodec() {}
+	
+	/**
+	 * @param signal
+	 * @param network, resolves node ids to indexes
+	 * @return byte[], encoded signal
+	 */
+	public static byte[] encode(NodeSignal signal, SimulatedNetwork network) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		String payload = signal.getPayload();
+		
+		if(payload == null) {
+			out.write(signal.getType() | PAYLOAD_NULL);
+			writeNode(out, signal.getOrigin(), network);
+		} else if(signal.getPayloadHash() != null) {
+			out.write(signal.getType() | PAYLOAD_HASH);
+			writeNode(out, signal.getOrigin(), network);
+			out.write(signal.getPayloadHash().toBytes(), 0, 32);
+		} else if(signal.getType() == NodeSignal.ACK_BATCH_SIGNAL) {
+			out.write(signal.getType() | PAYLOAD_HASH);
+			writeNode(out, signal.getOrigin(), network);
+			
+			List<Hash256> hashes = ((NodeSignalAckBatch)signal).getHashes();
+			writeVarint(out, hashes.size());
+			
+			for(Hash256 hash: hashes) {
+				out.write(hash.toBytes(), 0, 32);
+			}
+		} else if(isBlockSignal(signal) && payload.length() > 0) {
+			out.write(signal.getType() | PAYLOAD_BLOCK);
+			writeNode(out, signal.getOrigin(), network);
+			
+			writeBlock(out, network.decodeBlock(payload), network);
+		} else {
+			out.write(signal.getType());
+			writeNode(out, signal.getOrigin(), network);
+			writeText(out, payload);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	private static boolean isBlockSignal(NodeSignal signal) {
+		switch(signal.getType()) {
+			case NodeSignal.NEW_BLOCK_SIGNAL:
+			case NodeSignal.NEW_AUTH_BLOCK_SIGNAL:
+			case NodeSignal.BLOCK_RESPONSE_SIGNAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Block as varint height, creator node, previous block and chunk hashes, varint part count and length-prefixed parts
+	 */
+	private static void writeBlock(ByteArrayOutputStream out, Block block, SimulatedNetwork network) {
+		// decoded blocks may carry invalid heights (see SimulatedMaliciousBlockWriteNode)
+		writeVarint(out, block.getHeight() < 0 ? 0 : block.getHeight());
+		writeNode(out, block.getCreator(), network);
+		writeHash(out, block.getPrevious());
+		writeHash(out, block.getPreviousChunk());
+		
+		writeVarint(out, block.getPayloadParts().size());
+		
+		for(String part: block.getPayloadParts()) {
+			writeText(out, part);
+		}
+	}
+	
+	private static void writeNode(ByteArrayOutputStream out, String node, SimulatedNetwork network) {
+		int index = node == null ? -1 : network.getNodeIndex(node);
+		
+		writeVarint(out, index + 1);
+		
+		if(index == -1) {
+			writeText(out, node == null ? "" : node);
+		}
+	}
+	
+	private static void writeHash(ByteArrayOutputStream out, String hex) {
+		Hash256 hash = Hash256.fromHex(hex);
+		
+		if(hash != null) {
+			out.write(HASH_RAW);
+			out.write(hash.toBytes(), 0, 32);
+		} else {
+			out.write(HASH_TEXT);
+			writeText(out, hex == null ? "" : hex);
+		}
+	}
+	
+	private static void writeText(ByteArrayOutputStream out, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		
+		writeVarint(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+	
+	// unsigned LEB128, 7 bits per byte
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		
+		out.write(value);
+	}
+}
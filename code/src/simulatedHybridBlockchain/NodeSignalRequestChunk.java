@@ -0,0 +1,13 @@
+package simulatedHybridBlockchain;
+
+public final class NodeSignalRequestChunk extends NodeSignal {
+	/**
+	 * Asks for a run of blocks following the given block (see NodeSignalResponseChunk)
+	 * @param origin
+	 * @param payload, hash of the last block the requester has, "INIT" for an empty chain
+	 */
+	public NodeSignalRequestChunk(String origin, String payload) {
+		super(origin, payload);
+		this.type = NodeSignal.BLOCK_CHUNK_REQUEST_SIGNAL;
+	}
+}
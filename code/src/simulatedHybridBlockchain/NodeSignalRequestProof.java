@@ -0,0 +1,13 @@
+package simulatedHybridBlockchain;
+
+public final class NodeSignalRequestProof extends NodeSignal {
+	/**
+	 * Asks for a Merkle proof that a transaction is in the chain (see NodeSignalResponseProof)
+	 * @param origin
+	 * @param payload, hash of the transaction
+	 */
+	public NodeSignalRequestProof(String origin, Hash256 payload) {
+		super(origin, payload);
+		this.type = NodeSignal.LIGHT_PROOF_REQUEST_SIGNAL;
+	}
+}
@@ -0,0 +1,8 @@
+package simulatedHybridBlockchain;
+
+public final class NodeSignalRequestTransaction extends NodeSignal {
+	public NodeSignalRequestTransaction(String origin, Hash256 payload) {
+		super(origin, payload);
+		this.type = NodeSignal.TRANSACTION_REQUEST_SIGNAL;
+	}
+}
@@ -0,0 +1,60 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Run of consecutive blocks answering a BLOCK_CHUNK_REQUEST.
+ * Payload is structured as "block_count;length:block length:block ..." with blocks in chain order.
+ */
+public final class NodeSignalResponseChunk extends NodeSignal {
+	public NodeSignalResponseChunk(String origin, String payload) {
+		super(origin, payload);
+		this.type = NodeSignal.BLOCK_CHUNK_RESPONSE_SIGNAL;
+	}
+	
+	public NodeSignalResponseChunk(String origin, List<Block> blocks) {
+		this(origin, NodeSignalResponseChunk.encode(blocks));
+	}
+	
+	private static String encode(List<Block> blocks) {
+		StringBuilder payload = new StringBuilder();
+		payload.append(blocks.size()).append(';');
+		
+		for(Block block: blocks) {
+			String encoded = block.toString();
+			payload.append(encoded.length()).append(':').append(encoded);
+		}
+		
+		return payload.toString();
+	}
+	
+	/**
+	 * @param network, decodes blocks (see SimulatedNetwork.decodeBlock)
+	 * @return List<Block>, decoded blocks in order they were sent | null if malformed
+	 */
+	public List<Block> getBlocks(SimulatedNetwork network) {
+		String payload = this.getPayload();
+		
+		try {
+			int end = payload.indexOf(';');
+			int count = Integer.parseInt(payload.substring(0, end));
+			
+			List<Block> blocks = new ArrayList<>(count);
+			int start = end + 1;
+			
+			for(int a = 0; a < count; a++) {
+				end = payload.indexOf(':', start);
+				int length = Integer.parseInt(payload.substring(start, end));
+				
+				blocks.add(network.decodeBlock(payload.substring(end + 1, end + 1 + length)));
+				
+				start = end + 1 + length;
+			}
+			
+			return blocks;
+		} catch(RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package simulatedHybridBlockchain;
 
 public final class NodeSignalResponseDeny extends NodeSignal {
-	public NodeSignalResponseDeny(String origin, String payload) {
+	public NodeSignalResponseDeny(String origin, Hash256 payload) {
 		super(origin, payload);
 		this.type = NodeSignal.REQUEST_DENY_SIGNAL;
 	}
@@ -0,0 +1,46 @@
+package simulatedHybridBlockchain;
+
+/**
+ * Merkle proof of a transaction answering a LIGHT_PROOF_REQUEST, instead of the whole block.
+ * Payload is structured as "transaction_hash;block_header;proof", see Block.getHeader and MerkleProof.
+ * With Merkle hashing the block hash is SHA-256 of the header, so a receiver checks the header against
+ * its own chain and the proof against the Merkle root of the header.
+ */
+public final class NodeSignalResponseProof extends NodeSignal {
+	public NodeSignalResponseProof(String origin, String payload) {
+		super(origin, payload);
+		this.type = NodeSignal.LIGHT_PROOF_RESPONSE_SIGNAL;
+	}
+	
+	public NodeSignalResponseProof(String origin, Hash256 transaction, Block block) {
+		this(origin, transaction+";"+block.getHeader()+";"+block.getMerkleProof(transaction));
+	}
+	
+	/**
+	 * @return Hash256 | null if malformed
+	 */
+	public Hash256 getTransaction() {
+		String payload = this.getPayload();
+		int end = payload.indexOf(';');
+		
+		return end == -1 ? null : Hash256.fromHex(payload.substring(0, end));
+	}
+	
+	/**
+	 * @return String, header of the including block | null if malformed
+	 */
+	public String getHeader() {
+		String[] parts = this.getPayload().split(";", 3);
+		
+		return parts.length == 3 ? parts[1] : null;
+	}
+	
+	/**
+	 * @return MerkleProof | null if malformed
+	 */
+	public MerkleProof getProof() {
+		String[] parts = this.getPayload().split(";", 3);
+		
+		return parts.length == 3 ? MerkleProof.decode(parts[2]) : null;
+	}
+}
@@ -0,0 +1,13 @@
+package simulatedHybridBlockchain;
+
+public final class NodeSignalResponseRedirect extends NodeSignal {
+	/**
+	 * Answers a block request for pruned blocks (see Blockchain.pruneChunks)
+	 * @param origin
+	 * @param payload, id of a node that keeps full blocks
+	 */
+	public NodeSignalResponseRedirect(String origin, String payload) {
+		super(origin, payload);
+		this.type = NodeSignal.REQUEST_REDIRECT_SIGNAL;
+	}
+}
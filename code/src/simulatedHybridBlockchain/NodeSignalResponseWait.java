@@ -1,7 +1,7 @@
 package simulatedHybridBlockchain;
 
 public final class NodeSignalResponseWait extends NodeSignal {
-	public NodeSignalResponseWait(String origin, String payload) {
+	public NodeSignalResponseWait(String origin, Hash256 payload) {
 		super(origin, payload);
 		this.type = NodeSignal.REQUEST_WAIT_SIGNAL;
 	}
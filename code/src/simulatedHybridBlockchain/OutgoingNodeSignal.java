@@ -1,76 +1,269 @@
 package simulatedHybridBlockchain;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
+/**
+ * Forwarded signal waiting for responses of connected nodes, resent to nodes that do not respond in time.
+ *
+ * Nodes get a connection slot in the order they were passed, slots keep the node, the tick it was last sent to
+ * and the times it was sent to, in one int array. Slots still waiting for a response are marked in a bitmask.
+ */
 public class OutgoingNodeSignal {
+	private static final int NODE = 0;
+	private static final int SENT_AT = 1;
+	private static final int SENT_COUNT = 2;
+	private static final int SLOT_SIZE = 3;
 	
+	// sent at of slots never sent to, or answered with a final response
+	private static final int NOT_SENT = Integer.MIN_VALUE;
+	
+	// all nodes are referenced by index (see SimulatedNetwork.getNodeIndex)
 	private NodeSignal signal;
-	private HashMap<String, Integer> sentAt = new HashMap<>();
-	private HashSet<String> connections = new HashSet<>();
-	private HashMap<String, Integer> sentCounter = new HashMap<>();
 	private SimulatedNode parentNode;
-	private String sender;
 	
-	public OutgoingNodeSignal(NodeSignal signal, String origForward, String sender, Set<String> connections, SimulatedNode parentNode) {
-		this.connections.addAll(connections);
+	// node, sent at and sent count of each slot
+	private int[] slots;
+	private int slotCount;
+	
+	// slots waiting for a response, slots over 64 in further words
+	private long pending = 0;
+	private long[] pendingHigh = null;
+	private int waiting = 0;
+	
+	// retransmission timers by slot, only when retransmissions are driven by the node's RetransmitWheel
+	private RetransmitWheel.Timer[] timers = null;
+	
+	public OutgoingNodeSignal(NodeSignal signal, int origin, int origForward, int sender, int[] connections, SimulatedNode parentNode) {
+		this.slots = new int[connections.length * SLOT_SIZE];
 		
-		// will not report back to the forwarder, nor will report to itself or the original sender
-		this.connections.remove(signal.getOrigin());
-		this.connections.remove(sender);
-		this.connections.remove(origForward);
+		for(int node: connections) {
+			// will not report back to the forwarder, nor will report to itself or the original sender
+			if(node == origin || node == sender || node == origForward || this.slotOf(node) != -1) {
+				continue;
+			}
+			
+			int slot = this.slotCount++;
+			
+			this.slots[slot * SLOT_SIZE + NODE] = node;
+			this.slots[slot * SLOT_SIZE + SENT_AT] = NOT_SENT;
+			this.setPending(slot, true);
+		}
 		
-		this.signal = signal;
+		if(this.slotCount < connections.length) {
+			this.slots = Arrays.copyOf(this.slots, this.slotCount * SLOT_SIZE);
+		}
 		
+		this.signal = signal;
 		this.parentNode = parentNode;
-		this.sender = sender;
 	}
 	
 	public NodeSignal getSignal() {
 		return this.signal;
 	}
 	
-	public ArrayList<String> shouldBeSentAgain(int currentTick) {
-		ArrayList<String> sendAgain = new ArrayList<>(); 
+	/**
+	 * @param currentTick
+	 * @return int[], indexes of nodes the signal should be sent to
+	 */
+	public int[] shouldBeSentAgain(int currentTick) {
+		int[] nodes = new int[this.waiting];
+		int count = 0;
 		
-		for(String node: this.connections) {
-			if(this.sentAt.getOrDefault(node, 0) + this.parentNode.getConnectionDelay(node)*2.5 < currentTick || !this.sentAt.containsKey(node)) {
-				sendAgain.add(node);
-				this.sentAt.put(node, currentTick);
-				this.sentCounter.put(node, this.sentCounter.getOrDefault(node, 0) + 1);
+		for(int slot = 0; slot < this.slotCount; slot++) {
+			if(this.isPending(slot) && this.isDue(slot, currentTick)) {
+				nodes[count++] = this.slots[slot * SLOT_SIZE + NODE];
+				this.markSent(slot, currentTick);
 			}
 		}
 		
-		return sendAgain;
+		return count == nodes.length ? nodes : Arrays.copyOf(nodes, count);
+	}
+	
+	/**
+	 * Schedules the first sending to all connections on the wheel, sending is then driven by resend
+	 * @param wheel
+	 * @param currentTick
+	 */
+	public void scheduleAll(RetransmitWheel wheel, int currentTick) {
+		this.timers = new RetransmitWheel.Timer[this.slotCount];
+		
+		for(int slot = 0; slot < this.slotCount; slot++) {
+			if(this.isPending(slot)) {
+				this.timers[slot] = new RetransmitWheel.Timer(this, this.slots[slot * SLOT_SIZE + NODE]);
+				wheel.schedule(this.timers[slot], currentTick);
+			}
+		}
+	}
+	
+	/**
+	 * Handles a due timer of a connection like shouldBeSentAgain and removeStalledConnections for one node,
+	 * and schedules the next retransmission
+	 * @param timer
+	 * @param currentTick
+	 * @param limit, most sendings to a node before its connection is considered stalled
+	 * @return boolean, true if the signal should be sent to the node of the timer
+	 */
+	public boolean resend(RetransmitWheel.Timer timer, int currentTick, int limit) {
+		int slot = this.slotOf(timer.getNode());
+		
+		if(slot == -1 || !this.isPending(slot) || this.timers == null || this.timers[slot] != timer) {
+			return false;
+		}
+		
+		// no response to the last try either, the connection is stalled
+		if(this.slots[slot * SLOT_SIZE + SENT_COUNT] > limit) {
+			this.setPending(slot, false);
+			this.timers[slot] = null;
+			return false;
+		}
+		
+		// connection delay may have grown since the timer was scheduled
+		if(!this.isDue(slot, currentTick)) {
+			this.parentNode.retransmissions.schedule(timer, this.getResendTick(slot, this.slots[slot * SLOT_SIZE + SENT_AT]));
+			return false;
+		}
+		
+		this.markSent(slot, currentTick);
+		
+		// like removeStalledConnections on the next main thread execution, a stalled connection is not waited for
+		if(this.slots[slot * SLOT_SIZE + SENT_COUNT] > limit) {
+			this.parentNode.retransmissions.schedule(timer, currentTick + 1);
+		} else {
+			this.parentNode.retransmissions.schedule(timer, this.getResendTick(slot, currentTick));
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @param slot
+	 * @param sentTick
+	 * @return int, first tick at which shouldBeSentAgain sends to the node of the slot again
+	 */
+	private int getResendTick(int slot, int sentTick) {
+		return (int)Math.floor(sentTick + this.parentNode.getConnectionDelay(this.slots[slot * SLOT_SIZE + NODE])*2.5) + 1;
+	}
+	
+	/**
+	 * Cancels all retransmissions, when the signal is no longer forwarded
+	 */
+	public void cancelTimers() {
+		if(this.timers != null) {
+			for(int slot = 0; slot < this.slotCount; slot++) {
+				if(this.timers[slot] != null) {
+					this.parentNode.retransmissions.cancel(this.timers[slot]);
+					this.timers[slot] = null;
+				}
+			}
+		}
 	}
 	
 	// ACK, REJECT, or response with data received
-	public void markNodeFinalResponseReceived(String node_id) {
-		this.connections.remove(node_id);
-		this.sentAt.remove(node_id);
-		this.sentCounter.remove(node_id);
+	public void markNodeFinalResponseReceived(int node) {
+		int slot = this.slotOf(node);
+		
+		if(slot == -1) {
+			return;
+		}
+		
+		this.setPending(slot, false);
+		this.slots[slot * SLOT_SIZE + SENT_AT] = NOT_SENT;
+		this.slots[slot * SLOT_SIZE + SENT_COUNT] = 0;
+		
+		if(this.timers != null && this.timers[slot] != null) {
+			this.parentNode.retransmissions.cancel(this.timers[slot]);
+			this.timers[slot] = null;
+		}
 	}
 	
-	// WAIT signal received, just mark current 
-	public void markNodePingResponseReceived(String node_id, int currentTick) {
-		this.sentAt.put(node_id, currentTick);
+	// WAIT signal received, just mark current
+	public void markNodePingResponseReceived(int node, int currentTick) {
+		int slot = this.slotOf(node);
+		
+		if(slot == -1) {
+			return;
+		}
+		
+		this.slots[slot * SLOT_SIZE + SENT_AT] = currentTick;
+		
+		if(this.timers != null && this.timers[slot] != null) {
+			this.parentNode.retransmissions.schedule(this.timers[slot], this.getResendTick(slot, currentTick));
+		}
 	}
 	
 	public int getWaitingForResponse() {
-		return this.connections.size();
+		return this.waiting;
 	}
 	
-	public HashMap<String, Integer> getStalled() {
-		return this.sentCounter;
+	/**
+	 * @return int[], nodes the signal was sent to without a final response, in slot order
+	 */
+	public int[] getStalled() {
+		int[] nodes = new int[this.slotCount];
+		int count = 0;
+		
+		for(int slot = 0; slot < this.slotCount; slot++) {
+			if(this.slots[slot * SLOT_SIZE + SENT_COUNT] > 0) {
+				nodes[count++] = this.slots[slot * SLOT_SIZE + NODE];
+			}
+		}
+		
+		return Arrays.copyOf(nodes, count);
 	}
 	
 	public void removeStalledConnections(int limit) {
-		for(String node: this.sentCounter.keySet()) {
-			if(this.sentCounter.get(node) > limit) {
-				this.connections.remove(node);
+		for(int slot = 0; slot < this.slotCount; slot++) {
+			if(this.slots[slot * SLOT_SIZE + SENT_COUNT] > limit) {
+				this.setPending(slot, false);
+			}
+		}
+	}
+	
+	private boolean isDue(int slot, int currentTick) {
+		int sentAt = this.slots[slot * SLOT_SIZE + SENT_AT];
+		
+		return sentAt == NOT_SENT || sentAt + this.parentNode.getConnectionDelay(this.slots[slot * SLOT_SIZE + NODE])*2.5 < currentTick;
+	}
+	
+	private void markSent(int slot, int currentTick) {
+		this.slots[slot * SLOT_SIZE + SENT_AT] = currentTick;
+		this.slots[slot * SLOT_SIZE + SENT_COUNT]++;
+	}
+	
+	private int slotOf(int node) {
+		for(int slot = 0; slot < this.slotCount; slot++) {
+			if(this.slots[slot * SLOT_SIZE + NODE] == node) {
+				return slot;
 			}
 		}
+		
+		return -1;
+	}
+	
+	private boolean isPending(int slot) {
+		if(slot < 64) {
+			return (this.pending & (1L << slot)) != 0;
+		}
+		
+		return this.pendingHigh != null && (this.pendingHigh[(slot >>> 6) - 1] & (1L << slot)) != 0;
+	}
+	
+	private void setPending(int slot, boolean pending) {
+		if(this.isPending(slot) == pending) {
+			return;
+		}
+		
+		this.waiting += pending ? 1 : -1;
+		
+		if(slot < 64) {
+			this.pending ^= 1L << slot;
+			return;
+		}
+		
+		if(this.pendingHigh == null) {
+			this.pendingHigh = new long[(this.slots.length / SLOT_SIZE + 63) >>> 6];
+		}
+		
+		this.pendingHigh[(slot >>> 6) - 1] ^= 1L << slot;
 	}
 }
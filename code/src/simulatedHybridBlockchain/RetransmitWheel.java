@@ -0,0 +1,200 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+
+/**
+ * Hierarchical timer wheel of signal retransmissions, one timer per forwarded signal and peer (see OutgoingNodeSignal).
+ * Level l has 64 slots of 64^l ticks each, timers are placed by their due tick and move down a level when
+ * their slot of a higher level comes up. Scheduling and cancelling are O(1), advancing costs the passed ticks
+ * and the due timers only, instead of all outstanding signals.
+ */
+public class RetransmitWheel {
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int LEVELS = 4;
+	
+	// list of timers due at or before the current tick when scheduled
+	private static final int OVERDUE = LEVELS * SLOTS;
+	
+	public static class Timer {
+		private final OutgoingNodeSignal signal;
+		private final int node;
+		
+		private int due;
+		private int bucket = -1;
+		private Timer previous;
+		private Timer next;
+		
+		public Timer(OutgoingNodeSignal signal, int node) {
+			this.signal = signal;
+			this.node = node;
+		}
+		
+		public OutgoingNodeSignal getSignal() {
+			return this.signal;
+		}
+		
+		public int getNode() {
+			return this.node;
+		}
+		
+		public int getDue() {
+			return this.due;
+		}
+		
+		public boolean isScheduled() {
+			return this.bucket != -1;
+		}
+	}
+	
+	// heads and tails of doubly linked timer lists, by level * SLOTS + slot, timers of a list are due in the order they were scheduled
+	private Timer[] buckets = new Timer[OVERDUE + 1];
+	private Timer[] tails = new Timer[OVERDUE + 1];
+	private int now;
+	private int size = 0;
+	
+	public RetransmitWheel() {
+		this(0);
+	}
+	
+	public RetransmitWheel(int tick) {
+		this.now = tick;
+	}
+	
+	/**
+	 * Schedules the timer, moving it if it is already scheduled
+	 * @param timer
+	 * @param due, tick at which the timer is returned by advance
+	 */
+	public void schedule(Timer timer, int due) {
+		this.cancel(timer);
+		
+		timer.due = due;
+		this.insert(timer);
+		this.size++;
+	}
+	
+	/**
+	 * @param timer, ignored if not scheduled
+	 */
+	public void cancel(Timer timer) {
+		if(timer.bucket == -1) {
+			return;
+		}
+		
+		if(timer.previous != null) {
+			timer.previous.next = timer.next;
+		} else {
+			this.buckets[timer.bucket] = timer.next;
+		}
+		
+		if(timer.next != null) {
+			timer.next.previous = timer.previous;
+		} else {
+			this.tails[timer.bucket] = timer.previous;
+		}
+		
+		timer.previous = null;
+		timer.next = null;
+		timer.bucket = -1;
+		this.size--;
+	}
+	
+	/**
+	 * Moves the wheel to the tick
+	 * @param tick
+	 * @return ArrayList<Timer>, timers due until the tick, no longer scheduled
+	 */
+	public ArrayList<Timer> advance(int tick) {
+		ArrayList<Timer> due = new ArrayList<>();
+		
+		this.collect(OVERDUE, due);
+		
+		while(this.now < tick) {
+			if(this.size == 0) {
+				this.now = tick;
+				break;
+			}
+			
+			this.now++;
+			
+			// bring timers of higher levels whose slot comes up closer, they may land in the current slot
+			for(int level = LEVELS - 1; level > 0; level--) {
+				if((this.now & ((1 << (SLOT_BITS * level)) - 1)) == 0) {
+					Timer timer = this.detach(level * SLOTS + ((this.now >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+					
+					while(timer != null) {
+						Timer next = timer.next;
+						
+						timer.previous = null;
+						timer.next = null;
+						this.insert(timer);
+						timer = next;
+					}
+				}
+			}
+			
+			this.collect(this.now & (SLOTS - 1), due);
+			this.collect(OVERDUE, due);
+		}
+		
+		return due;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	private void insert(Timer timer) {
+		int bucket = OVERDUE;
+		
+		if(timer.due > this.now) {
+			int level = 0;
+			
+			// lowest level whose slots of the current round still include the due tick
+			while(level < LEVELS - 1 && (timer.due >>> (SLOT_BITS * (level + 1))) != (this.now >>> (SLOT_BITS * (level + 1)))) {
+				level++;
+			}
+			
+			bucket = level * SLOTS + ((timer.due >>> (SLOT_BITS * level)) & (SLOTS - 1));
+		}
+		
+		timer.bucket = bucket;
+		timer.previous = this.tails[bucket];
+		
+		if(timer.previous != null) {
+			timer.previous.next = timer;
+		} else {
+			this.buckets[bucket] = timer;
+		}
+		
+		this.tails[bucket] = timer;
+	}
+	
+	private Timer detach(int bucket) {
+		Timer head = this.buckets[bucket];
+		this.buckets[bucket] = null;
+		this.tails[bucket] = null;
+		
+		return head;
+	}
+	
+	/**
+	 * Takes all timers of a bucket due by now, ie. the overdue list or the level 0 slot of the current tick
+	 */
+	private void collect(int bucket, ArrayList<Timer> due) {
+		Timer timer = this.detach(bucket);
+		
+		while(timer != null) {
+			Timer next = timer.next;
+			
+			timer.previous = null;
+			timer.next = null;
+			timer.bucket = -1;
+			this.size--;
+			due.add(timer);
+			
+			timer = next;
+		}
+	}
+}
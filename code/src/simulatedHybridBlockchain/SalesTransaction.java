@@ -47,7 +47,7 @@ public class SalesTransaction extends Transaction {
 		signatures = signatures.concat("<eet:pkp digest='SHA256' cipher='RSA2048' encoding='base64'>"+this.signaturesData.get("pkp")+"</eet:pkp>");
 		signatures = signatures.concat("<eet:bkp digest='SHA1' encoding='base16'>"+this.signaturesData.get("bkp")+"</eet:bkp></eet:KontrolniKody>");
 		
-		this.payload = "<eet:Trzba>"+head+body+signatures+"</eet:Trzba>";
+		this.setPayload("<eet:Trzba>"+head+body+signatures+"</eet:Trzba>");
 	}
 	
 	/**
@@ -68,7 +68,7 @@ public class SalesTransaction extends Transaction {
 		ret = ret.concat("pkp: {digest:'SHA256', cipher:'RSA2048', encoding:'base64', data:'"+this.signaturesData.get("pkp")+"'}, ");
 		ret = ret.concat("bkp: {digest:'SHA1', encoding:'base16', data:'"+this.signaturesData.get("bkp")+"'}}");
 		
-		this.payload =  ret;
+		this.setPayload(ret);
 	}
 
 	/**
@@ -0,0 +1,56 @@
+package simulatedHybridBlockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SHA-256 digests of blocks, chunks, transactions and signals (see Hash256).
+ * Counts computed digests, so that runs can report hashing work per block (see Main).
+ */
+public class Sha256 {
+	private static final AtomicLong computed = new AtomicLong();
+	
+	// MessageDigest is not thread-safe, nodes may be executed concurrently
+	private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 is not available", e);
+		}
+	});
+	
+	/**
+	 * @param data
+	 * @return byte[], SHA-256 of UTF-8 bytes of data
+	 */
+	public static byte[] digest(String data) {
+		computed.incrementAndGet();
+		
+		return digests.get().digest(data.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * @param parts
+	 * @return byte[], SHA-256 of all parts one after another
+	 */
+	public static byte[] digest(byte[]... parts) {
+		MessageDigest digest = digests.get();
+		
+		for(byte[] part: parts) {
+			digest.update(part);
+		}
+		
+		computed.incrementAndGet();
+		
+		return digest.digest();
+	}
+	
+	/**
+	 * @return long, amount of digests computed so far
+	 */
+	public static long getComputedCount() {
+		return computed.get();
+	}
+}
@@ -0,0 +1,128 @@
+package simulatedHybridBlockchain;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read node auditing published transactions like a light client: once a transaction should be buried in a block,
+ * asks one peer for a Merkle proof of its inclusion (LIGHT_PROOF_REQUEST) instead of the whole block.
+ * Proofs are checked against block hashes of its own chain and reported as LIGHT_PROOF, with the size of the proof
+ * next to the size of the including block. Needs Merkle hashing of blocks (see SimulatedNetwork.setMerkleBlocks).
+ */
+public class SimulatedAuditNode extends SimulatedNode {
+	
+	// ticks after a transaction was received before its inclusion is audited, and between two audits
+	private int auditDelay = 5000;
+	private int auditRepetition = 500;
+	
+	// transactions waiting for an audit, bounded so that audits sample the published transactions
+	private int maxAuditQueue = 10;
+	
+	private int lastAudit = 0;
+	private int audits = 0;
+	
+	// received transactions and sent requests, by tick
+	private LinkedHashMap<Hash256, Integer> auditQueue = new LinkedHashMap<>();
+	private LinkedHashMap<Hash256, Integer> requestedProofs = new LinkedHashMap<>();
+	
+	public SimulatedAuditNode(SimulatedNetwork network, String id) {
+		super(network, id);
+	}
+	
+	public SimulatedAuditNode() {
+	
+	}
+	
+	@Override
+	protected int parseSignal(NodeSignal signal, int processedAt) {
+		int delay = super.parseSignal(signal, processedAt);
+		
+		switch(signal.getType()) {
+			case NodeSignal.NEW_TRANSACTION_SIGNAL:
+				if(this.auditQueue.size() < this.maxAuditQueue) {
+					this.auditQueue.putIfAbsent(new Transaction(signal.getPayload()).getHash(), processedAt);
+				}
+				
+				break;
+			
+			case NodeSignal.LIGHT_PROOF_RESPONSE_SIGNAL:
+				this.verifyProof((NodeSignalResponseProof) signal, processedAt);
+				
+				break;
+		}
+		
+		return delay;
+	}
+	
+	@Override
+	protected int executeSpecificLogic(int networkTick) {
+		if(this.lastAudit + this.auditRepetition > networkTick) {
+			return 0;
+		}
+		
+		this.lastAudit = networkTick;
+		
+		// requests without proof were denied or lost
+		Iterator<Map.Entry<Hash256, Integer>> requested = this.requestedProofs.entrySet().iterator();
+		
+		while(requested.hasNext()) {
+			Map.Entry<Hash256, Integer> request = requested.next();
+			
+			if(request.getValue() + this.auditDelay < networkTick) {
+				this.network.log.special(this.getId(), "LIGHT_PROOF", "No proof for transaction "+request.getKey(), networkTick);
+				requested.remove();
+			}
+		}
+		
+		Iterator<Map.Entry<Hash256, Integer>> queued = this.auditQueue.entrySet().iterator();
+		int[] peers = this.activeOutgoingConnections.keys();
+		
+		if(queued.hasNext() && peers.length > 0) {
+			Map.Entry<Hash256, Integer> next = queued.next();
+			
+			if(next.getValue() + this.auditDelay <= networkTick) {
+				queued.remove();
+				
+				// spread audits over peers
+				this.addPendingOutgoing(peers[this.audits % peers.length], new NodeSignalRequestProof(this.getId(), next.getKey()), networkTick);
+				this.requestedProofs.put(next.getKey(), networkTick);
+				this.audits++;
+			}
+		}
+		
+		return 0;
+	}
+	
+	private void verifyProof(NodeSignalResponseProof signal, int processedAt) {
+		Hash256 transaction = signal.getTransaction();
+		
+		if(transaction == null || this.requestedProofs.remove(transaction) == null) {
+			return;
+		}
+		
+		String header = signal.getHeader();
+		MerkleProof proof = signal.getProof();
+		
+		boolean valid = false;
+		Block own = null;
+		
+		if(header != null && proof != null) {
+			String[] fields = header.split(":");
+			
+			try {
+				own = this.internalChain.getByHeight(Integer.parseInt(fields[0]));
+			} catch(NumberFormatException e) {}
+			
+			// header must be a block of this chain, and the transaction must lead to its Merkle root
+			valid = own != null && own.getHash().equals(Hash256.digest(header)) && proof.verify(transaction, Hash256.fromHex(fields[fields.length - 1]));
+		}
+		
+		if(valid) {
+			this.network.log.special(this.getId(), "LIGHT_PROOF", String.format("Transaction %s in block %d, proof of %d bytes instead of block of %d bytes",
+					transaction, own.getHeight(), signal.getTextSize(), own.isPruned() ? 0 : own.toString().length()), processedAt);
+		} else {
+			this.network.log.special(this.getId(), "LIGHT_PROOF", "Unverified proof for transaction "+transaction+" from "+signal.getOrigin(), processedAt);
+		}
+	}
+}
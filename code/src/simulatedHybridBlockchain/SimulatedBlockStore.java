@@ -0,0 +1,148 @@
+package simulatedHybridBlockchain;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Network-wide store of immutable blocks, shared by the chains of all nodes (see SimulatedNetwork.setSharedBlocks).
+ *
+ * Blocks are decoded and hashed once per distinct encoding, every node receiving the same block signal
+ * gets the same Block object. Chains keep their blocks by hash in the shared map, so memory grows with
+ * unique blocks while each node only holds its own height index and tip.
+ * Decoded blocks no chain can append any more, ie. up to the height of the shortest chain, are evicted
+ * (see evict), only blocks accepted by some chain stay in the store. Heights of chains are tracked as they append,
+ * and decoded blocks further than DECODED_DEPTH below the highest chain are evicted as well,
+ * so that a node which stopped following the chain does not keep all decodings alive.
+ * Nodes may be executed concurrently, so blocks are fully decoded and hashed before they are published.
+ */
+public class SimulatedBlockStore {
+	// heights below the highest chain of which decoded blocks are kept
+	public static final int DECODED_DEPTH = 64;
+	
+	// canonical blocks by height and their encoding (Block.toString), including blocks never added to a chain
+	private ConcurrentHashMap<Integer, ConcurrentHashMap<String, Block>> decoded = new ConcurrentHashMap<>();
+	
+	// decoded blocks up to this height are evicted and no longer cached
+	private volatile int evictedHeight = 0;
+	
+	// amount of chains using the store by their height, the shortest and the highest of them
+	private HashMap<Integer, Integer> chainHeights = new HashMap<>();
+	private int shortestChain = 0;
+	private int highestChain = 0;
+	
+	// blocks added to any chain, by hash
+	private ConcurrentHashMap<Hash256, Block> blocks = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param encoded, block as in NEW_BLOCK and BLOCK_RESPONSE signals
+	 * @param merkleHashing, hash the block over its header (see Block(boolean))
+	 * @return Block, shared with other nodes, must not be changed
+	 */
+	public Block decode(String encoded, boolean merkleHashing) {
+		// encoding starts with the height, see Block.toString
+		int height = Integer.parseInt(encoded.substring(0, encoded.indexOf(':')));
+		ConcurrentHashMap<String, Block> sameHeight = null;
+		Block block = null;
+		
+		if(height > this.evictedHeight) {
+			sameHeight = this.decoded.computeIfAbsent(height, key -> new ConcurrentHashMap<>());
+			block = sameHeight.get(encoded);
+		}
+		
+		if(block == null) {
+			block = new Block(merkleHashing);
+			block.decodeNewBlock(encoded);
+			
+			// fill memoized fields, shared blocks are only read afterwards
+			block.getHash();
+			block.getPreviousHash();
+			block.getPayloadParts();
+			block.getTransactionHashes();
+			
+			if(merkleHashing) {
+				block.getMerkleRoot();
+			}
+			
+			Block existing = sameHeight != null ? sameHeight.putIfAbsent(encoded, block) : null;
+			
+			if(existing != null) {
+				block = existing;
+			}
+		}
+		
+		return block;
+	}
+	
+	/**
+	 * Counts a chain which starts using the store
+	 * @param height, height of the chain
+	 */
+	public synchronized void addChain(int height) {
+		this.chainHeights.merge(height, 1, Integer::sum);
+		
+		if(this.chainHeights.size() == 1 || height < this.shortestChain) {
+			this.shortestChain = height;
+		}
+		
+		this.highestChain = Math.max(this.highestChain, height);
+	}
+	
+	/**
+	 * Moves a chain using the store to its new height, called by chains appending blocks
+	 * @param from, previous height of the chain
+	 * @param to, new height of the chain
+	 */
+	public synchronized void moveChain(int from, int to) {
+		this.chainHeights.computeIfPresent(from, (key, count) -> count > 1 ? count - 1 : null);
+		this.chainHeights.merge(to, 1, Integer::sum);
+		
+		// chains only grow, so the shortest chain moves up to the next height holding a chain
+		while(!this.chainHeights.containsKey(this.shortestChain)) {
+			this.shortestChain++;
+		}
+		
+		this.highestChain = Math.max(this.highestChain, to);
+	}
+	
+	/**
+	 * Drops decoded blocks up to the shortest chain, which no chain can append any more,
+	 * and further than DECODED_DEPTH below the highest chain. O(1) unless a height is evicted.
+	 * Must not be called while nodes are executed.
+	 */
+	public synchronized void evict() {
+		int height = Math.max(this.shortestChain, this.highestChain - DECODED_DEPTH);
+		
+		while(this.evictedHeight < height) {
+			this.decoded.remove(this.evictedHeight + 1);
+			this.evictedHeight++;
+		}
+	}
+	
+	/**
+	 * @return Map<Hash256, Block>, blocks of all chains by hash, used as block map of Blockchain
+	 */
+	public Map<Hash256, Block> getBlocks() {
+		return this.blocks;
+	}
+	
+	/**
+	 * @return int, amount of distinct decoded blocks not evicted yet
+	 */
+	public int getDecodedCount() {
+		int count = 0;
+		
+		for(ConcurrentHashMap<String, Block> sameHeight: this.decoded.values()) {
+			count += sameHeight.size();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return int, amount of distinct blocks in chains
+	 */
+	public int getBlockCount() {
+		return this.blocks.size();
+	}
+}
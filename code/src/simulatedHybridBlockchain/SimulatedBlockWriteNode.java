@@ -1,6 +1,6 @@
 package simulatedHybridBlockchain;
 
-import java.util.ArrayList;
+import java.util.List;
 
 public class SimulatedBlockWriteNode extends SimulatedNode {
 
@@ -9,6 +9,10 @@ public class SimulatedBlockWriteNode extends SimulatedNode {
 	private int lastChunkHeight = 0;
 	private int minTransactions = 0;
 	
+	// tick at which the chain last grew, next block waits for SimulatedNetwork.blockInterval unless the candidate is full
+	private int lastBlockHeight = -1;
+	private int lastBlockTick = 0;
+	
 	public SimulatedBlockWriteNode(SimulatedNetwork network, String id) {
 		super(network, id);
 		
@@ -19,17 +23,22 @@ public class SimulatedBlockWriteNode extends SimulatedNode {
 
 	@Override
 	protected int executeSpecificLogic(int networkTick) {
+		if(this.internalChain.getHeight() != this.lastBlockHeight) {
+			this.lastBlockHeight = this.internalChain.getHeight();
+			this.lastBlockTick = networkTick;
+		}
+		
 		if(this.activeOutgoingConnections.size() > 0) {
 			// only create a block when prompted by access chain
-			if(this.accessChain.getNextCreator().equals(this.getId()) && this.transactionPool.size() > minTransactions) {
-				Block block = new Block();
+			if(this.accessChain.getNextCreator().equals(this.getId()) && this.transactionPool.size() > minTransactions && this.isBatchReady(networkTick)) {
+				Block block = new Block(this.network.merkleBlocks);
 				block.addCreator(this.getId());
 				
-				ArrayList<String> keys = new ArrayList<String>(this.transactionPool.keySet());
+				List<Transaction> transactions = this.transactionPool.getTransactions();
 				
-				if(keys.size() > 0) {
-					for(String trans: keys) {
-						block.addPayload(this.transactionPool.get(trans).toString());
+				if(transactions.size() > 0) {
+					for(Transaction trans: transactions) {
+						block.addPayload(trans.toString());
 					}
 					
 					block.addPrevious(this.internalChain.getCurrentHash());
@@ -53,6 +62,14 @@ public class SimulatedBlockWriteNode extends SimulatedNode {
 		return this.network.nodeThreadDelay;
 	}
 	
+	/**
+	 * @param networkTick
+	 * @return boolean, true if the block interval passed since the last block or no further transaction fits into the block
+	 */
+	private boolean isBatchReady(int networkTick) {
+		return this.lastBlockTick + this.network.blockInterval <= networkTick || this.transactionPool.isCandidateFull();
+	}
+	
 	public void setMinTransactions(int min) {
 		this.minTransactions = min;
 	}
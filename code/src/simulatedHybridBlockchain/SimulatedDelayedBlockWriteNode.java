@@ -23,14 +23,14 @@ public class SimulatedDelayedBlockWriteNode extends SimulatedBlockWriteNode {
 			}
 		}
 		
-		ArrayList<String> sigList = new ArrayList<>(this.forwardSignals.keySet());
-		Iterator<String> sigIter = sigList.iterator();
+		ArrayList<Hash256> sigList = new ArrayList<>(this.forwardSignals.keySet());
+		Iterator<Hash256> sigIter = sigList.iterator();
 		
 		while(sigIter.hasNext()) {
-			String key = sigIter.next();
+			Hash256 key = sigIter.next();
 			
 			if(this.forwardSignals.get(key).getSignal().getType() == NodeSignal.NEW_BLOCK_SIGNAL) {
-				this.forwardSignals.remove(key);
+				this.removeForwardSignal(key);
 			}
 		}
 		
@@ -0,0 +1,160 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+/**
+ * Calendar (bucketed) priority queue of simulation events keyed by tick.
+ *
+ * Events within the next "width" ticks are kept in a ring of per-tick buckets, so adding and popping
+ * them is O(1). Events scheduled further into the future, or into the past (ie. at a tick that was already
+ * drained, which happens with relative delays), are kept in a sorted overflow map.
+ *
+ * Events are returned grouped by tick, in ascending tick order, and in insertion order within one tick.
+ * Past events are always returned first, as they precede every event in the ring.
+ */
+public class SimulatedEventQueue<T> {
+	public static final int DEFAULT_WIDTH = 4096;
+
+	private ArrayList<T>[] buckets;
+	private int[] bucketTicks;
+	private int mask;
+
+	// overflow for past events and events further than the ring width
+	private TreeMap<Integer, ArrayList<T>> overflow = new TreeMap<>();
+
+	// last drained tick, ring holds only ticks in (cursor, cursor+width]
+	private int cursor;
+	private int ringSize = 0;
+	private int size = 0;
+
+	public SimulatedEventQueue(int startTick) {
+		this(startTick, DEFAULT_WIDTH);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public SimulatedEventQueue(int startTick, int width) {
+		int ringWidth = Integer.highestOneBit(Math.max(width, 2));
+
+		this.buckets = new ArrayList[ringWidth];
+		this.bucketTicks = new int[ringWidth];
+		this.mask = ringWidth - 1;
+		this.cursor = startTick - 1;
+	}
+
+	/**
+	 * Schedules an event at given tick
+	 * @param tick
+	 * @param event
+	 */
+	public void add(int tick, T event) {
+		if(tick > this.cursor && tick - this.cursor <= this.buckets.length) {
+			int index = tick & this.mask;
+
+			if(this.buckets[index] == null) {
+				this.buckets[index] = new ArrayList<>();
+				this.bucketTicks[index] = tick;
+			}
+
+			this.buckets[index].add(event);
+			this.ringSize++;
+		} else {
+			ArrayList<T> events = this.overflow.get(tick);
+
+			if(events == null) {
+				events = new ArrayList<>();
+				this.overflow.put(tick, events);
+			}
+
+			events.add(event);
+		}
+
+		this.size++;
+	}
+
+	/**
+	 * Removes and returns all events of the earliest tick that is lower or equal to given tick.
+	 * Should be called repeatedly until null is returned, which means that the queue was drained up to given tick.
+	 *
+	 * @param tick
+	 * @return ArrayList of events in insertion order | null
+	 */
+	public ArrayList<T> pollDue(int tick) {
+		// events scheduled into already drained ticks come first
+		if(!this.overflow.isEmpty() && this.overflow.firstKey() <= this.cursor) {
+			return this.take(this.overflow.pollFirstEntry().getValue());
+		}
+
+		while(this.cursor < tick) {
+			if(this.ringSize == 0) {
+				// nothing in the ring, jump straight ahead to the next overflow tick
+				int next = this.overflow.isEmpty() ? tick : Math.min(this.overflow.firstKey(), tick);
+
+				if(next - 1 > this.cursor) {
+					this.cursor = next - 1;
+				}
+			}
+
+			this.cursor++;
+
+			ArrayList<T> events = null;
+
+			// far events were inserted earlier than any ring event of the same tick
+			if(!this.overflow.isEmpty() && this.overflow.firstKey() == this.cursor) {
+				events = this.overflow.pollFirstEntry().getValue();
+			}
+
+			int index = this.cursor & this.mask;
+
+			if(this.buckets[index] != null && this.bucketTicks[index] == this.cursor) {
+				ArrayList<T> ringEvents = this.buckets[index];
+				this.buckets[index] = null;
+				this.ringSize -= ringEvents.size();
+
+				if(events == null) {
+					events = ringEvents;
+				} else {
+					events.addAll(ringEvents);
+				}
+			}
+
+			if(events != null) {
+				return this.take(events);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return int, tick of the earliest pending event | -1 if queue is empty
+	 */
+	public int peekTick() {
+		if(this.size == 0) {
+			return -1;
+		}
+
+		int earliest = this.overflow.isEmpty() ? Integer.MAX_VALUE : this.overflow.firstKey();
+
+		if(this.ringSize > 0) {
+			for(int tick = this.cursor + 1; tick < earliest; tick++) {
+				int index = tick & this.mask;
+
+				if(this.buckets[index] != null && this.bucketTicks[index] == tick) {
+					return tick;
+				}
+			}
+		}
+
+		return earliest;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private ArrayList<T> take(ArrayList<T> events) {
+		this.size -= events.size();
+		return events;
+	}
+}
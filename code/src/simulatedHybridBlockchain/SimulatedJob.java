@@ -2,10 +2,18 @@ package simulatedHybridBlockchain;
 
 public class SimulatedJob {
 	protected NodeSignal signal;
-	protected String target;
+	protected int target;
 	protected int delay;
 	
-	public SimulatedJob(NodeSignal signal, String target, int delay) {
+	// tick the job was queued by the target node (see IngressQueues)
+	protected int queuedAt = 0;
+	
+	/**
+	 * @param signal
+	 * @param target, index of target node (see SimulatedNetwork.getNodeIndex)
+	 * @param delay, tick of execution
+	 */
+	public SimulatedJob(NodeSignal signal, int target, int delay) {
 		this.signal = signal;
 		this.target = target;
 		this.delay = delay;
@@ -15,11 +23,19 @@ public class SimulatedJob {
 		return this.signal;
 	}
 	
-	public String getTarget() {
+	public int getTarget() {
 		return this.target;
 	}
 	
 	public int getDelay() {
 		return this.delay;
 	}
+	
+	public int getQueuedAt() {
+		return this.queuedAt;
+	}
+	
+	public void setQueuedAt(int tick) {
+		this.queuedAt = tick;
+	}
 }
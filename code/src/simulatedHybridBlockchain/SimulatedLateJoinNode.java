@@ -0,0 +1,67 @@
+package simulatedHybridBlockchain;
+
+/**
+ * Read node that misses all blocks and transactions until joinAt, as if it was restored from an empty snapshot,
+ * and then has to catch up with the chain. It keeps its connections meanwhile, ie. still answers ACTIVE signals.
+ * Reports progress of the catch-up as BLOCK_SYNC until it reaches the longest chain in the network.
+ */
+public class SimulatedLateJoinNode extends SimulatedNode {
+	
+	private int joinAt = 10000;
+	private int syncedHeight = 0;
+	private boolean caughtUp = false;
+	
+	public SimulatedLateJoinNode(SimulatedNetwork network, String id) {
+		super(network, id);
+	}
+	
+	public SimulatedLateJoinNode() {
+	
+	}
+	
+	public void setJoinAt(int tick) {
+		this.joinAt = tick;
+	}
+	
+	@Override
+	protected int parseSignal(NodeSignal signal, int processedAt) {
+		if(processedAt < this.joinAt) {
+			switch(signal.getType()) {
+				case NodeSignal.NEW_BLOCK_SIGNAL:
+				case NodeSignal.NEW_TRANSACTION_SIGNAL:
+				case NodeSignal.BLOCK_RESPONSE_SIGNAL:
+				case NodeSignal.BLOCK_CHUNK_RESPONSE_SIGNAL:
+					// acknowledged, so that senders keep the connection, but discarded
+					this.sendAck(this.network.getNodeIndex(signal.getForwardOrigin()), signal, processedAt);
+					
+					return this.network.nodeThreadDelay;
+			}
+		}
+		
+		return super.parseSignal(signal, processedAt);
+	}
+	
+	@Override
+	protected int executeSpecificLogic(int networkTick) {
+		if(networkTick < this.joinAt || this.caughtUp || this.internalChain.getHeight() == this.syncedHeight) {
+			return 0;
+		}
+		
+		this.syncedHeight = this.internalChain.getHeight();
+		
+		int target = this.network.getMaxChainHeight();
+		int ticks = Math.max(networkTick - this.joinAt, 1);
+		
+		this.caughtUp = this.syncedHeight >= target;
+		this.network.log.special(this.getId(), "BLOCK_SYNC", String.format("Synced %d of %d blocks in %d ticks since joining, %.2f blocks per 1000 ticks%s",
+				this.syncedHeight, target, ticks, this.syncedHeight * 1000.0 / ticks, this.caughtUp ? ", caught up" : ""), networkTick);
+		
+		return 0;
+	}
+	
+	@Override
+	public boolean canExecuteInParallel(int networkTick) {
+		// reads chains of other nodes
+		return false;
+	}
+}
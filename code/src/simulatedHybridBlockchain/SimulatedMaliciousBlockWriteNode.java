@@ -1,10 +1,6 @@
 package simulatedHybridBlockchain;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
+import java.util.List;
 
 public class SimulatedMaliciousBlockWriteNode extends SimulatedNode {
 
@@ -61,6 +57,12 @@ public class SimulatedMaliciousBlockWriteNode extends SimulatedNode {
 		return this.network.nodeThreadDelay;
 	}
 
+	@Override
+	public boolean canExecuteInParallel(int networkTick) {
+		// RNG draw depends on transactions received within the same execution
+		return false;
+	}
+
 	private Block createFarFutureBlock(Block block) {
 		block.setHeight(block.getHeight()+50);
 		
@@ -79,16 +81,8 @@ public class SimulatedMaliciousBlockWriteNode extends SimulatedNode {
 	}
 
 	private Block createInvalidHashChain(Block block) {	
-		String bad_hash = "bad hash";
-		
-		try {
-			MessageDigest hash = MessageDigest.getInstance("SHA-256");
-			
-			String prev = this.internalChain.getCurrentChunkHash();
-			hash.update(prev.getBytes("UTF-8"));
-			
-			bad_hash = String.format("%064x", new BigInteger(1, hash.digest()));
-		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {}
+		String prev = this.internalChain.getCurrentChunkHash();
+		String bad_hash = Hash256.digest(prev).toString();
 		
 		block.addPreviousChunk(bad_hash);
 		
@@ -97,14 +91,14 @@ public class SimulatedMaliciousBlockWriteNode extends SimulatedNode {
 
 	private Block createValidBlock() {
 		if(this.accessChain.getNextCreator().equals(this.getId()) && this.transactionPool.size() > 0) {
-			Block block = new Block();
+			Block block = new Block(this.network.merkleBlocks);
 			block.addCreator(this.getId());
 			
-			ArrayList<String> keys = new ArrayList<String>(this.transactionPool.keySet());
+			List<Transaction> transactions = this.transactionPool.getTransactions();
 			
-			if(keys.size() > 0) {
-				for(String trans: keys) {
-					block.addPayload(this.transactionPool.get(trans).toString());
+			if(transactions.size() > 0) {
+				for(Transaction trans: transactions) {
+					block.addPayload(trans.toString());
 				}
 				
 				block.addPrevious(this.internalChain.getCurrentHash());
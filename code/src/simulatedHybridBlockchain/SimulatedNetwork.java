@@ -2,12 +2,15 @@ package simulatedHybridBlockchain;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class SimulatedNetwork {
 	
@@ -17,6 +20,27 @@ public class SimulatedNetwork {
 	// basically controls the minimum speed of the simulation
 	protected int tickSpeed = 1;
 	
+	// wall-clock pacing is only needed when someone is watching, ie. charts are attached
+	protected boolean paced = true;
+	
+	// number of processed events (delivered signals and node executions), used for throughput statistics
+	protected long processedEvents = 0;
+	
+	// optional pool for executing main threads of nodes due in the same tick, null means sequential execution
+	protected ForkJoinPool parallelPool = null;
+	
+	// smaller groups of nodes are not worth the hand-off to the pool
+	protected int parallelMinBatch = 16;
+	
+	// optional directory of nodes with free connection slots, null means peers are picked from the shuffled node list
+	protected SimulatedPeerDirectory peerDirectory = null;
+	
+	// bandwidth of signals accounted with their binary encoding, otherwise with toString() text
+	protected boolean binaryWireFormat = false;
+	
+	// binary sizes of signals also measured under text accounting, for statistics at the end of a run
+	protected boolean statistics = false;
+	
 	// delay of incoming treads for blocking operations
 	protected int nodeThreadDelay = 1;
 	protected int nodeThreadDelayNewTransaction = 2;
@@ -37,16 +61,60 @@ public class SimulatedNetwork {
 	
 	protected int blockChunkThreshold = 5;
 	
+	// lagging nodes request runs of up to chunkSyncBlocks blocks instead of single blocks, see setChunkSync
+	protected boolean chunkSync = false;
+	protected int chunkSyncBlocks = 50;
+	
+	// nodes without WRITE permission keep only headers of blocks in chunks buried by pruneDepth blocks, 0 disables pruning
+	protected int pruneDepth = 0;
+	
+	// blocks created and decoded by nodes are hashed over headers with Merkle roots (see setMerkleBlocks)
+	protected boolean merkleBlocks = false;
+	
+	// limits of the transaction pools of all nodes (see Mempool.setLimits), 0 means unlimited
+	protected int mempoolTransactions = 0;
+	protected long mempoolBytes = 0;
+	protected int mempoolPerOrigin = 0;
+	protected int mempoolMaxAge = 0;
+	
+	// retransmissions of forwarded signals driven by a timer wheel per node instead of scanning all signals (see setRetransmitWheel)
+	protected boolean retransmitWheel = false;
+	
+	// waiting blocks indexed by previous hash and height and checked on chain changes only (see setWaitingBlockIndex)
+	protected boolean waitingBlockIndex = false;
+	
+	// incoming signals of nodes queued by class and dequeued by weight instead of latest first (see setPriorityIngress)
+	protected boolean priorityIngress = false;
+	
+	// ticks nodes collect ACKs to a peer before sending them in one batch, 0 sends every ACK alone (see setAckBatchWindow)
+	protected int ackBatchWindow = 0;
+	
+	// nodes announce transaction hashes and peers request payloads they have not seen, instead of forwarding payloads (see setTransactionInventory)
+	protected boolean transactionInventory = false;
+	
+	// limits of blocks created by write nodes, 0 means unlimited, and ticks a write node waits after the last block
+	// before creating the next one unless it is full (see setBlockLimits)
+	protected int blockMaxTransactions = 0;
+	protected long blockMaxBytes = 0;
+	protected int blockInterval = 0;
+	
+	// optional store of blocks shared by the chains of all nodes, null means every node decodes and keeps its own blocks
+	protected SimulatedBlockStore blockStore = null;
+	
 	protected Random rng;
 	
 	protected LinkedHashMap<String, SimulatedNode> nodes = new LinkedHashMap<>();
-	protected HashMap<String, Integer> nodeConnectionCosts = new HashMap<>();;
+	
+	// dense node indexes assigned in insertion order, string ids are only used for configuration and logging
+	protected HashMap<String, Integer> nodeIndexes = new HashMap<>();
+	protected ArrayList<SimulatedNode> indexedNodes = new ArrayList<>();
+	protected int[] nodeConnectionCosts = new int[16];
 	
 	// specifies when a particular node should be executed again
-	protected HashMap<Integer, ArrayList<String>> nextNodeExecTimes = new HashMap<>();;
+	protected SimulatedEventQueue<SimulatedNode> nextNodeExecTimes = new SimulatedEventQueue<>(0);
 	
 	// stores pending signals grouped by time when they should be executed
-	protected HashMap<Integer, ArrayList<SimulatedJob>> pendingSignals = new HashMap<>();;
+	protected SimulatedEventQueue<SimulatedJob> pendingSignals = new SimulatedEventQueue<>(0);
 	
 	protected HashMap<String, Integer> initialAuths = new HashMap<>();
 	
@@ -65,12 +133,324 @@ public class SimulatedNetwork {
 		return this.tickSpeed;
 	}
 	
+	/**
+	 * Sets minimum milliseconds per simulation step, 0 disables sleeping altogether
+	 * @param newTick
+	 */
 	public void setTickSpeed(int newTick) {
-		if(newTick > 0) {
+		if(newTick >= 0) {
 			this.tickSpeed = newTick;
 		}
 	}
 	
+	public boolean isPaced() {
+		return this.paced;
+	}
+	
+	/**
+	 * Enables or disables wall-clock pacing of simulate(), headless runs should not sleep at all
+	 * @param paced
+	 */
+	public void setPaced(boolean paced) {
+		this.paced = paced;
+	}
+	
+	public long getProcessedEvents() {
+		return this.processedEvents;
+	}
+	
+	/**
+	 * Sets amount of threads used for executing nodes due in the same tick, 1 or less means sequential execution.
+	 * Results are identical to the sequential execution.
+	 * @param threads
+	 */
+	public void setParallelism(int threads) {
+		if(this.parallelPool != null) {
+			this.parallelPool.shutdown();
+		}
+		
+		this.parallelPool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+	
+	/**
+	 * Picks peers for new connections by sampling nodes with free slots instead of shuffling all nodes.
+	 * Runs are still deterministic for a seed, but connect to different peers than with shuffling.
+	 * @param enabled
+	 */
+	public void setPeerSampling(boolean enabled) {
+		if(enabled && this.peerDirectory == null) {
+			this.peerDirectory = new SimulatedPeerDirectory();
+			
+			for(SimulatedNode node: this.indexedNodes) {
+				this.peerDirectory.update(node);
+			}
+		} else if(!enabled) {
+			this.peerDirectory = null;
+		}
+	}
+	
+	/**
+	 * Accounts bandwidth of signals with their binary encoding (see NodeSignalCodec) instead of toString() text.
+	 * Connection limits follow the measured bandwidth, so runs differ from text accounting.
+	 * @param enabled
+	 */
+	public void setBinaryWireFormat(boolean enabled) {
+		this.binaryWireFormat = enabled;
+	}
+	
+	public boolean isBinaryWireFormat() {
+		return this.binaryWireFormat;
+	}
+	
+	/**
+	 * Measures binary sizes of sent signals under text accounting as well, so both encodings can be compared.
+	 * @param enabled
+	 */
+	public void setStatistics(boolean enabled) {
+		this.statistics = enabled;
+	}
+	
+	/**
+	 * @return boolean, true if binary sizes of sent signals are measured (see getSentBytes)
+	 */
+	public boolean isMeasuringBinarySize() {
+		return this.binaryWireFormat || this.statistics;
+	}
+	
+	/**
+	 * @param signal
+	 * @return int, bytes of the signal on the wire in the used format
+	 */
+	public int getWireSize(NodeSignal signal) {
+		return this.binaryWireFormat ? signal.getBinarySize(this) : signal.getTextSize();
+	}
+	
+	/**
+	 * @param binary, binary encoding or text
+	 * @return long, bytes of all signals sent by all nodes in the given encoding, 0 for binary unless measured (see isMeasuringBinarySize)
+	 */
+	public long getSentBytes(boolean binary) {
+		long bytes = 0;
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			bytes += binary ? node.sentBinaryBytes : node.sentTextBytes;
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * @param type, signal type (see NodeSignal)
+	 * @return long, bytes of signals of the type sent by all nodes, as text
+	 */
+	public long getSentBytes(int type) {
+		long bytes = 0;
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			bytes += node.sentTextBytesByType[type];
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * @param type, signal type (see NodeSignal), -1 for all types
+	 * @return long, signals of the type sent by all nodes
+	 */
+	public long getSentSignals(int type) {
+		long count = 0;
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			for(int a = 0; a < node.signalsSent.size(); a++) {
+				if(type == -1 || type == a) {
+					count += node.signalsSent.get(a);
+				}
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Lets nodes that time out waiting for a block request a whole run of blocks (BLOCK_CHUNK_REQUEST)
+	 * instead of the next single block (BLOCK_REQUEST).
+	 * @param enabled
+	 */
+	public void setChunkSync(boolean enabled) {
+		this.chunkSync = enabled;
+	}
+	
+	/**
+	 * Lets nodes without WRITE permission drop payloads of blocks in sealed chunks buried by depth blocks.
+	 * Requests for pruned blocks are redirected to WRITE nodes, so runs differ from full nodes.
+	 * @param depth, blocks on top of a chunk before it is pruned, 0 disables pruning
+	 */
+	public void setPruneDepth(int depth) {
+		this.pruneDepth = Math.max(depth, 0);
+	}
+	
+	/**
+	 * Bounds the transaction pools of all nodes, evicting the oldest transactions when full.
+	 * Blocks take transactions of bounded pools in arrival order, so runs differ from unbounded pools.
+	 * @param transactions, most transactions in a pool, 0 for unlimited
+	 * @param bytes, most bytes of transactions in a pool, 0 for unlimited
+	 * @param per_origin, most transactions of one publisher in a pool, 0 for unlimited
+	 * @param age, ticks a transaction waits for a block before it is evicted, 0 for unlimited
+	 */
+	public void setMempoolLimits(int transactions, long bytes, int per_origin, int age) {
+		this.mempoolTransactions = transactions;
+		this.mempoolBytes = bytes;
+		this.mempoolPerOrigin = per_origin;
+		this.mempoolMaxAge = age;
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			node.transactionPool.setLimits(transactions, bytes, per_origin, age);
+		}
+	}
+	
+	/**
+	 * Lets nodes schedule retransmissions of forwarded signals on a timer wheel (see RetransmitWheel), so that a main
+	 * thread execution touches only signals due for a retransmission and signals completed since the last one.
+	 * Signals are resent in order of their timers instead of in order of forwardSignals, so runs differ from scanning.
+	 * Must be enabled before the simulation starts.
+	 * @param enabled
+	 */
+	public void setRetransmitWheel(boolean enabled) {
+		this.retransmitWheel = enabled;
+	}
+	
+	/**
+	 * Lets nodes keep blocks they cannot add yet in a WaitingBlockIndex, and try only blocks following the tip
+	 * once the tip or the next forger changed, instead of parsing all waiting blocks on each main thread execution.
+	 * Waiting blocks are no longer reported on every try, so logs differ from rescanning.
+	 * @param enabled
+	 */
+	public void setWaitingBlockIndex(boolean enabled) {
+		this.waitingBlockIndex = enabled;
+	}
+	
+	/**
+	 * Lets nodes queue incoming signals by class (see IngressQueues) and parse control, block and transaction signals
+	 * in weighted turns, each class in arrival order, instead of the latest signal first. Runs differ from one stack.
+	 * @param enabled
+	 */
+	public void setPriorityIngress(boolean enabled) {
+		this.priorityIngress = enabled;
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			node.waitingSignals.setPrioritized(enabled);
+		}
+	}
+	
+	/**
+	 * Lets nodes send the first ACK to a peer right away, and collect further ACKs to the peer during a window
+	 * into one ACK_BATCH signal (see NodeSignalAckBatch), instead of one ACK per received signal.
+	 * Windows are capped to a quarter of the connection delay, so that batched ACKs arrive before retransmissions.
+	 * Runs differ from single ACKs.
+	 * @param window, ticks of the batch window, 0 disables batching
+	 */
+	public void setAckBatchWindow(int window) {
+		this.ackBatchWindow = Math.max(window, 0);
+	}
+	
+	/**
+	 * Lets nodes forward TRANSACTION_ANNOUNCE signals with the transaction hash instead of NEW_TRANSACTION payloads.
+	 * A node requests the payload (TRANSACTION_REQUEST) from the first peer announcing a transaction it has not seen,
+	 * and from a further announcer only if the first one did not answer in time, so each node receives a payload about once.
+	 * Transactions reach peers a round trip later, so runs differ from forwarded payloads.
+	 * @param enabled
+	 */
+	public void setTransactionInventory(boolean enabled) {
+		this.transactionInventory = enabled;
+	}
+	
+	/**
+	 * Caps blocks of write nodes, which take the oldest transactions of their pools that fit (see Mempool.setBlockLimits),
+	 * and lets them batch transactions for an interval after the last block. Blocks differ from uncapped runs.
+	 * @param transactions, most transactions in a block, 0 for unlimited
+	 * @param bytes, most bytes of payload in a block, 0 for unlimited
+	 * @param interval, ticks after the last block before a block that is not full is created, should stay below block timeouts
+	 */
+	public void setBlockLimits(int transactions, long bytes, int interval) {
+		this.blockMaxTransactions = transactions;
+		this.blockMaxBytes = bytes;
+		this.blockInterval = Math.max(interval, 0);
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			node.transactionPool.setBlockLimits(transactions, bytes);
+		}
+	}
+	
+	/**
+	 * Lets block hashes cover block headers with a Merkle root over transactions (see Block(boolean)),
+	 * so that nodes can serve inclusion proofs of transactions (LIGHT_PROOF_REQUEST). Changes all block hashes,
+	 * must be enabled before the simulation starts.
+	 * @param enabled
+	 */
+	public void setMerkleBlocks(boolean enabled) {
+		this.merkleBlocks = enabled;
+	}
+	
+	/**
+	 * Lets all nodes share decoded blocks through one store, instead of each node decoding and keeping its own copies.
+	 * Chains of nodes stay the same, must be enabled before the simulation starts.
+	 * @param enabled
+	 */
+	public void setSharedBlocks(boolean enabled) {
+		if(enabled && this.blockStore == null) {
+			this.blockStore = new SimulatedBlockStore();
+			
+			for(SimulatedNode node: this.indexedNodes) {
+				node.internalChain.setBlockStore(this.blockStore);
+			}
+		}
+	}
+	
+	/**
+	 * @return SimulatedBlockStore | null if nodes keep their own blocks
+	 */
+	public SimulatedBlockStore getBlockStore() {
+		return this.blockStore;
+	}
+	
+	/**
+	 * @param encoded, block as in NEW_BLOCK and BLOCK_RESPONSE signals
+	 * @return Block, shared with other nodes if there is a block store
+	 */
+	public Block decodeBlock(String encoded) {
+		if(this.blockStore != null) {
+			return this.blockStore.decode(encoded, this.merkleBlocks);
+		}
+		
+		Block block = new Block(this.merkleBlocks);
+		block.decodeNewBlock(encoded);
+		
+		return block;
+	}
+	
+	/**
+	 * @return int, height of the longest chain among all nodes
+	 */
+	public int getMaxChainHeight() {
+		int height = 0;
+		
+		for(SimulatedNode node: this.indexedNodes) {
+			height = Math.max(height, node.internalChain.getHeight());
+		}
+		
+		return height;
+	}
+	
+	/**
+	 * Refreshes the node in the peer directory, if there is one
+	 * @param node
+	 */
+	protected void updatePeerDirectory(SimulatedNode node) {
+		if(this.peerDirectory != null) {
+			this.peerDirectory.update(node);
+		}
+	}
+	
 	public int getCurrentTick() {
 		return this.currentTick;
 	}
@@ -82,40 +462,66 @@ public class SimulatedNetwork {
 	public void addNode(SimulatedNode node, int delay) {
 		this.nodes.put(node.getId(), node);
 		
-		ArrayList<String> currentIdList = new ArrayList<>();
+		Integer index = this.nodeIndexes.get(node.getId());
 		
-		if(this.nextNodeExecTimes.containsKey(delay)) {
-			currentIdList = this.nextNodeExecTimes.get(delay);
+		if(index == null) {
+			index = this.indexedNodes.size();
+			this.nodeIndexes.put(node.getId(), index);
+			this.indexedNodes.add(node);
+		} else {
+			this.indexedNodes.set(index, node);
 		}
 		
-		currentIdList.add(node.getId());
+		if(this.blockStore != null && node.internalChain.getHeight() == 0) {
+			node.internalChain.setBlockStore(this.blockStore);
+		}
 		
-		this.nextNodeExecTimes.put(delay, currentIdList);
+		node.transactionPool.setLimits(this.mempoolTransactions, this.mempoolBytes, this.mempoolPerOrigin, this.mempoolMaxAge);
+		node.transactionPool.setBlockLimits(this.blockMaxTransactions, this.blockMaxBytes);
+		node.waitingSignals.setPrioritized(this.priorityIngress);
+		node.setIndex(index);
+		this.nextNodeExecTimes.add(delay, node);
+		this.updatePeerDirectory(node);
 		
 		// add new connection with cost between min and max cost, with seeded RNG
-		this.nodeConnectionCosts.put(node.getId(), (this.rng.nextInt(this.maxConnectionCost) + this.minConnectionCost));
+		this.setConnectionCost(index, (this.rng.nextInt(this.maxConnectionCost) + this.minConnectionCost));
+	}
+	
+	/**
+	 * @param nodeId
+	 * @return int, dense index of the node | -1 if there is no such node
+	 */
+	public int getNodeIndex(String nodeId) {
+		Integer index = this.nodeIndexes.get(nodeId);
+		return index != null ? index : -1;
+	}
+	
+	public SimulatedNode getNode(int index) {
+		return this.indexedNodes.get(index);
+	}
+	
+	public String getNodeId(int index) {
+		return this.indexedNodes.get(index).getId();
+	}
+	
+	public void setConnectionCost(int index, int cost) {
+		if(index >= this.nodeConnectionCosts.length) {
+			this.nodeConnectionCosts = Arrays.copyOf(this.nodeConnectionCosts, Math.max(index + 1, this.nodeConnectionCosts.length * 2));
+		}
+		
+		this.nodeConnectionCosts[index] = cost;
 	}
 	
 	public void simulate() {		
 		// execute pending signals, sorted by exec_time
-		ArrayList<Integer> delayTimes = new ArrayList<>(this.pendingSignals.keySet());
-		Collections.sort(delayTimes);
+		ArrayList<SimulatedJob> jobs;
 		
-		Iterator<Integer> delayIterator = delayTimes.iterator();
-		while(delayIterator.hasNext()) {
-			int key = delayIterator.next();
-			
-			if(key <= this.currentTick) {
-				ArrayList<SimulatedJob> jobs = this.pendingSignals.get(key);
-				for(SimulatedJob job: jobs) {
-					String target = job.getTarget();
-					this.nodes.get(target).executeIncomingConnection(job, this.currentTick);
-				}
-				
-				this.pendingSignals.remove(key);
-			} else {
-				break; // only future signals from here on
+		while((jobs = this.pendingSignals.pollDue(this.currentTick)) != null) {
+			for(SimulatedJob job: jobs) {
+				this.indexedNodes.get(job.getTarget()).executeIncomingConnection(job, this.currentTick);
 			}
+			
+			this.processedEvents += jobs.size();
 		}
 		
 		// go through know exec times for nodes
@@ -123,62 +529,30 @@ public class SimulatedNetwork {
 		// add pending outgoing jobs to list
 		// find the nearest exec_time, so that we can jump ahead
 		
-		ArrayList<Integer> execTimes = new ArrayList<>(this.nextNodeExecTimes.keySet());
-		Collections.sort(execTimes);
-		
-		//this.print("pending keys: "+this.nextNodeExecTimes.keySet().size());
-		
 		int nextDelay = -1;
 		
-		Iterator<Integer> execIterator = execTimes.iterator();
-		while(execIterator.hasNext()) {
-			int key = execIterator.next();
-			
-			if(key <= this.currentTick) {
-				//this.print("Executing tick jobs at "+key);
-				ArrayList<String> nodesToExec = this.nextNodeExecTimes.get(key);
-				
-				for(String nodeId: nodesToExec) {
+		ArrayList<SimulatedNode> nodesToExec;
+		
+		while((nodesToExec = this.nextNodeExecTimes.pollDue(this.currentTick)) != null) {
+			if(this.parallelPool == null) {
+				for(SimulatedNode node: nodesToExec) {
 					// execute each node
 					// add back into queue based on current_tick + returned delay
 					
-					SimulatedNode node = this.nodes.get(nodeId);
-					
 					int delay = node.executeMainThread(this.currentTick) + this.currentTick;
 					
-					ArrayList<SimulatedJob> pending = node.getPendingOutgoingConnections();
-					for(SimulatedJob job: pending) {
-						ArrayList<SimulatedJob> currentJobList = new ArrayList<>();
-						
-						if(this.pendingSignals.containsKey(job.getDelay())) {
-							currentJobList = this.pendingSignals.get(job.getDelay());
-						}
-						
-						currentJobList.add(job);
-						
-						this.pendingSignals.put(job.getDelay(), currentJobList);
-					}
-					
-					node.clearPendingOutgoingConnections();
-					
-					ArrayList<String> newExecTimes = new ArrayList<>();
-					
-					if(this.nextNodeExecTimes.containsKey(delay)) {
-						newExecTimes = this.nextNodeExecTimes.get(delay);
-					}
-					
-					newExecTimes.add(nodeId);
-					this.nextNodeExecTimes.put(delay, newExecTimes);
-					
-					if(nextDelay == -1 || nextDelay > delay) {
-						nextDelay = delay;
-					}
+					nextDelay = this.finishNodeExecution(node, delay, nextDelay);
 				}
-				
-				this.nextNodeExecTimes.remove(key);
 			} else {
-				break; // only future node invocations from here on
+				nextDelay = this.executeNodesInParallel(nodesToExec, nextDelay);
 			}
+			
+			this.processedEvents += nodesToExec.size();
+		}
+		
+		// no chain can append blocks up to the height of the shortest chain, their decodings are dropped
+		if(this.blockStore != null) {
+			this.blockStore.evict();
 		}
 		
 		if(nextDelay != -1) {
@@ -188,80 +562,249 @@ public class SimulatedNetwork {
 			this.currentTick++;
 		}
 		
+		if(this.paced && this.getTickSpeed() > 0) {
+			try {
+				Thread.sleep(this.getTickSpeed());
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Collects outgoing signals of an executed node and schedules its next execution
+	 * @param node
+	 * @param delay, tick of next execution
+	 * @param nextDelay, nearest known tick of next execution
+	 * @return int, updated nearest tick of next execution
+	 */
+	private int finishNodeExecution(SimulatedNode node, int delay, int nextDelay) {
+		ArrayList<SimulatedJob> pending = node.getPendingOutgoingConnections();
+		for(SimulatedJob job: pending) {
+			this.pendingSignals.add(job.getDelay(), job);
+		}
+		
+		node.clearPendingOutgoingConnections();
+		this.updatePeerDirectory(node);
+		
+		this.nextNodeExecTimes.add(delay, node);
+		
+		if(nextDelay == -1 || nextDelay > delay) {
+			nextDelay = delay;
+		}
+		
+		return nextDelay;
+	}
+	
+	/**
+	 * Executes nodes in given order, consecutive nodes that only touch their own state run concurrently.
+	 * Nodes reaching into shared state (other nodes, RNG) run alone, so the outcome matches sequential execution.
+	 * @param nodesToExec
+	 * @param nextDelay
+	 * @return int, updated nearest tick of next execution
+	 */
+	private int executeNodesInParallel(ArrayList<SimulatedNode> nodesToExec, int nextDelay) {
+		ArrayList<SimulatedNode> group = new ArrayList<>();
+		
+		for(SimulatedNode node: nodesToExec) {
+			if(node.canExecuteInParallel(this.currentTick)) {
+				group.add(node);
+			} else {
+				nextDelay = this.executeNodeGroup(group, nextDelay);
+				group.clear();
+				
+				int delay = node.executeMainThread(this.currentTick) + this.currentTick;
+				nextDelay = this.finishNodeExecution(node, delay, nextDelay);
+			}
+		}
+		
+		return this.executeNodeGroup(group, nextDelay);
+	}
+	
+	private int executeNodeGroup(ArrayList<SimulatedNode> group, int nextDelay) {
+		final int tick = this.currentTick;
+		
+		if(group.size() < this.parallelMinBatch) {
+			for(SimulatedNode node: group) {
+				nextDelay = this.finishNodeExecution(node, node.executeMainThread(tick) + tick, nextDelay);
+			}
+			
+			return nextDelay;
+		}
+		
+		// shared RNG draws are done up-front in node order
+		for(SimulatedNode node: group) {
+			node.prepareParallelExecution(tick);
+		}
+		
+		final int[] delays = new int[group.size()];
+		ArrayList<Callable<ArrayList<String>>> tasks = new ArrayList<>();
+		
+		for(int a = 0; a < group.size(); a++) {
+			final SimulatedNode node = group.get(a);
+			final int index = a;
+			
+			tasks.add(() -> {
+				ArrayList<String> messages;
+				this.log.startCapture();
+				
+				try {
+					delays[index] = node.executeMainThread(tick);
+				} finally {
+					messages = this.log.stopCapture();
+				}
+				
+				return messages;
+			});
+		}
 		
 		try {
-			Thread.sleep(this.getTickSpeed());
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			List<Future<ArrayList<String>>> results = this.parallelPool.invokeAll(tasks);
+			
+			// merge logs and outboxes in node order
+			for(int a = 0; a < group.size(); a++) {
+				this.log.flush(results.get(a).get());
+				nextDelay = this.finishNodeExecution(group.get(a), delays[a] + tick, nextDelay);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Parallel node execution failed", e);
 		}
+		
+		return nextDelay;
 	}
 	
 	/**
 	 * Establishes UPLOAD from caller, target receives a new DOWNLOAD connection
 	 * i.e. caller wants to upload somewhere
-	 * @param caller
-	 * @return
-	 */
-	public String establishNewUploadConnection(String caller) {
-		List<String> keys = new ArrayList<String>(this.nodes.keySet());
-		Collections.shuffle(keys, this.rng); // shuffle using seeded RNG
-		for(String target: keys) {
-			if(!target.equals(caller)) {
-				if(this.nodes.get(target).establishDownloadConnection(caller, this.getConnectionDelay(caller, target))) {
+	 * @param caller, index of node
+	 * @return int, index of target node | -1 if no node accepted the connection
+	 */
+	public int establishNewUploadConnection(int caller) {
+		if(this.peerDirectory != null) {
+			SimulatedPeerDirectory.Sampler candidates = this.peerDirectory.sampleFreeDownloads(caller, this.rng);
+			int target;
+			
+			while((target = candidates.next()) != -1) {
+				if(this.indexedNodes.get(target).establishDownloadConnection(caller, this.getConnectionDelay(caller, target))) {
+					this.peerDirectory.update(this.indexedNodes.get(target));
+					return target;
+				}
+			}
+			
+			return -1;
+		}
+		
+		for(int target: this.shuffledNodes()) {
+			if(target != caller) {
+				if(this.indexedNodes.get(target).establishDownloadConnection(caller, this.getConnectionDelay(caller, target))) {
 					return target;
 				}
 			}
 		}
 		
-		return null;
+		return -1;
 	}
 	
-	public boolean closeUploadConnection(String caller, String target) {
-		return this.nodes.get(target).closeDownloadFrom(caller);
+	public boolean closeUploadConnection(int caller, int target) {
+		boolean closed = this.indexedNodes.get(target).closeDownloadFrom(caller);
+		this.updatePeerDirectory(this.indexedNodes.get(target));
+		
+		return closed;
 	}
 	
 	/**
 	 * Establishes DOWNLOAD from caller, target receives a new UPLOAD connection
 	 * i.e. caller wants to download from somewhere
-	 * @param caller
-	 * @param set 
-	 * @return
-	 */
-	public String establishNewDownloadConnection(String caller) {
-		List<String> keys = new ArrayList<String>(this.nodes.keySet());
-		Collections.shuffle(keys, this.rng); // shuffle using seeded RNG
-		for(String target: keys) {
-			if(!target.equals(caller)) {
-				if(this.nodes.get(target).establishUploadConnection(caller, this.getConnectionDelay(caller, target))) {
+	 * @param caller, index of node
+	 * @return int, index of target node | -1 if no node accepted the connection
+	 */
+	public int establishNewDownloadConnection(int caller) {
+		if(this.peerDirectory != null) {
+			SimulatedPeerDirectory.Sampler candidates = this.peerDirectory.sampleFreeUploads(caller, this.rng);
+			int target;
+			
+			while((target = candidates.next()) != -1) {
+				if(this.indexedNodes.get(target).establishUploadConnection(caller, this.getConnectionDelay(caller, target))) {
+					this.peerDirectory.update(this.indexedNodes.get(target));
 					return target;
 				}
 			}
+			
+			return -1;
+		}
+		
+		for(int target: this.shuffledNodes()) {
+			if(target != caller) {
+				if(this.indexedNodes.get(target).establishUploadConnection(caller, this.getConnectionDelay(caller, target))) {
+					return target;
+				}
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Establishes DOWNLOAD from caller to the given target, target receives a new UPLOAD connection
+	 * @param caller, index of node
+	 * @param target, index of node
+	 * @return boolean, true if the target accepted the connection
+	 */
+	public boolean establishDownloadConnection(int caller, int target) {
+		if(target == caller || !this.indexedNodes.get(target).establishUploadConnection(caller, this.getConnectionDelay(caller, target))) {
+			return false;
 		}
 		
-		return null;
+		this.updatePeerDirectory(this.indexedNodes.get(target));
+		
+		return true;
 	}
 	
-	public boolean closeDownloadConnection(String caller, String target) {
-		return this.nodes.get(target).closeUploadTo(caller);
+	public boolean closeDownloadConnection(int caller, int target) {
+		boolean closed = this.indexedNodes.get(target).closeUploadTo(caller);
+		this.updatePeerDirectory(this.indexedNodes.get(target));
+		
+		return closed;
+	}
+	
+	/**
+	 * Shuffles node indexes using seeded RNG, draws are the same as Collections.shuffle() of the node list
+	 * @return int[]
+	 */
+	private int[] shuffledNodes() {
+		int[] keys = new int[this.indexedNodes.size()];
+		
+		for(int a = 0; a < keys.length; a++) {
+			keys[a] = a;
+		}
+		
+		for(int a = keys.length; a > 1; a--) {
+			int swap = this.rng.nextInt(a);
+			int key = keys[a-1];
+			keys[a-1] = keys[swap];
+			keys[swap] = key;
+		}
+		
+		return keys;
 	}
 	
 	/**
 	 * Gets connection cost to a particular node, or returns the default connection cost
-	 * @param node
+	 * @param node, index of node
 	 * @return int delay in ticks
 	 */
-	public int getConnectionDelay(String node) {
-		return this.nodeConnectionCosts.getOrDefault(node, this.defaultConnectionCost);
+	public int getConnectionDelay(int node) {
+		return node >= 0 && node < this.indexedNodes.size() ? this.nodeConnectionCosts[node] : this.defaultConnectionCost;
 	}
 	
 	/**
 	 * Shorthand for connection between two nodes.
 	 * Takes both connection costs to node1 and node2 and returns a mean average.
-	 * @param node1, id of node
-	 * @param node2, id of node
+	 * @param node1, index of node
+	 * @param node2, index of node
 	 * @return int delay in ticks
 	 */
-	public int getConnectionDelay(String node1, String node2) {
+	public int getConnectionDelay(int node1, int node2) {
 		return (this.getConnectionDelay(node1)+this.getConnectionDelay(node2))/2;
 	}
 
@@ -516,16 +1059,18 @@ public class SimulatedNetwork {
 		for(String node_id: this.nodes.keySet()) {
 			SimulatedNode node = this.nodes.get(node_id); 
 			
-			if(node.internalChain.height > height) {
+			// pruned chains only keep headers of old blocks
+			if(node.internalChain.height > height && node.internalChain.getPrunedHeight() == 0) {
 				longest = node_id;
 				height = node.internalChain.height;
 			}
 		}
 		
 		if(longest != null) {
-			for(Block block: this.nodes.get(longest).internalChain.blocks.values()) {
-				String[] trans = block.getPayload().split("\\|\\|");
-				data.add(trans.length);
+			Blockchain chain = this.nodes.get(longest).internalChain;
+			
+			for(Block block: chain.getRange(1, chain.getHeight())) {
+				data.add(block.getPayloadParts().size());
 			}
 		}
 		
@@ -541,14 +1086,17 @@ public class SimulatedNetwork {
 		for(String node_id: this.nodes.keySet()) {
 			SimulatedNode node = this.nodes.get(node_id); 
 			
-			if(node.internalChain.height > height) {
+			// pruned chains only keep headers of old blocks
+			if(node.internalChain.height > height && node.internalChain.getPrunedHeight() == 0) {
 				longest = node_id;
 				height = node.internalChain.height;
 			}
 		}
 		
 		if(longest != null) {
-			for(Block block: this.nodes.get(longest).internalChain.blocks.values()) {
+			Blockchain chain = this.nodes.get(longest).internalChain;
+			
+			for(Block block: chain.getRange(1, chain.getHeight())) {
 				try {
 					data.add(block.toString().getBytes("UTF-8").length);
 				} catch(UnsupportedEncodingException ex) {}
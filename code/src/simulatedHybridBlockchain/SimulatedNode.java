@@ -1,13 +1,12 @@
 package simulatedHybridBlockchain;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Defines a basic simulated node that performs "concurrent jobs"
@@ -15,9 +14,10 @@ import java.util.List;
  */
 public abstract class SimulatedNode {
 	private 	String uuid;
+	protected 	int index = -1;
 	protected 	String currentBlock;
 	protected 	SimulatedNetwork network;
-	protected 	HashMap<String, Transaction> transactionPool = new HashMap<>();
+	protected 	Mempool 		transactionPool = new Mempool(); 		// transactions waiting for a block, bounded by SimulatedNetwork.setMempoolLimits
 	protected 	Blockchain 		internalChain = new Blockchain(); 		// access-protected internal data blockchain
 	protected 	AuthBlockchain 	accessChain = new AuthBlockchain(); 	// public blockchain with access rights to the internal blockchain
 	
@@ -39,8 +39,20 @@ public abstract class SimulatedNode {
 	
 	private int transactionsBlockHeightCache = 5;
 	
+	// chain height and tick of the last followed REQUEST_REDIRECT, pruned peers answering the same request redirect alike
+	private int redirectedHeight = -1;
+	private int redirectedAt = 0;
+	
+	// queued REQUEST_REDIRECT signals, following one opens a connection to another node (see canExecuteInParallel)
+	private int queuedRedirects = 0;
+	
 	protected int receivedSinceLastUpdate = 0;
 	protected int sentSinceLastUpdate = 0;
+	
+	// bytes of all sent signals in both encodings, for comparing wire formats (see SimulatedNetwork.getSentBytes)
+	protected long sentTextBytes = 0;
+	protected long sentBinaryBytes = 0;
+	protected long[] sentTextBytesByType = new long[NodeSignal.TYPE_COUNT];
 	protected int acceptedTransactions = 0;
 	protected int forgerCounter = 0;
 	
@@ -55,31 +67,55 @@ public abstract class SimulatedNode {
 	protected ArrayList<Integer> signalsReceived = new ArrayList<>();
 	protected ArrayList<Integer> signalsSent = new ArrayList<>();
 	
-	protected ArrayDeque<SimulatedJob> 	waitingSignals = new ArrayDeque<>();
+	// incoming signals by class, prioritized by SimulatedNetwork.setPriorityIngress
+	protected IngressQueues 		waitingSignals = new IngressQueues();
 	protected ArrayList<SimulatedJob> 	pendingOutgoing = new ArrayList<>();
 	
-	private HashMap<String, Block> waitingBlocks = new HashMap<>();
+	private HashMap<Hash256, Block> waitingBlocks = new HashMap<>();
+	
+	// waiting blocks by previous hash and height, checked only once the tip or the next forger changed (see SimulatedNetwork.setWaitingBlockIndex)
+	private WaitingBlockIndex waitingIndex = new WaitingBlockIndex();
+	private String waitingCheckedTip = null;
+	private String waitingCheckedForger = null;
+	
+	protected HashMap<Hash256, OutgoingNodeSignal> forwardSignals = new HashMap<>();
+	
+	// retransmission timers of forwardSignals and signals no longer waiting for any response,
+	// used instead of scanning all forwardSignals (see SimulatedNetwork.setRetransmitWheel)
+	protected RetransmitWheel retransmissions = new RetransmitWheel();
+	private ArrayDeque<Hash256> completedSignals = new ArrayDeque<>();
 	
-	protected HashMap<String, OutgoingNodeSignal> forwardSignals = new HashMap<>();
-	protected HashMap<Integer, HashSet<String>> clearForwardTransactionsAt = new HashMap<>();
+	// received and accepted transactions, expiring transactionsBlockHeightCache blocks later
+	protected ExpiringHashSet seenTransactions = new ExpiringHashSet();
+	
+	// ACKs waiting to be sent in one batch to each peer, and the tick the batch is due (see SimulatedNetwork.setAckBatchWindow)
+	private HashMap<Integer, ArrayList<Hash256>> pendingAcks = new HashMap<>();
+	private NodeIndexMap pendingAcksDue = new NodeIndexMap();
+	
+	// announced transactions requested from a peer, by the tick a request to another announcer is allowed
+	// (see SimulatedNetwork.setTransactionInventory), pruned in order of requests
+	private HashMap<Hash256, Integer> requestedTransactions = new HashMap<>();
+	private ArrayDeque<Hash256> requestedOrder = new ArrayDeque<>();
 
+	// per-node state below is keyed by node index (see SimulatedNetwork.getNodeIndex)
+	
 	// keeps track of neighbour connections, ie. when they last reported ACTIVE signal
 	// also includes nodes with WRITE access (ie. those creating blocks)
-	protected HashMap<String, Integer> lastActiveSignalReceived = new HashMap<>();
-	private HashMap<String, Integer> connectionCooldownAt = new HashMap<>();
+	protected NodeIndexMap lastActiveSignalReceived = new NodeIndexMap();
+	private NodeIndexMap connectionCooldownAt = new NodeIndexMap();
 	
 	// ACTIVE signal delays, used to estimate if nodes are up or down
-	private HashMap<String, Integer> lastActiveSignalDelay = new HashMap<>();
+	private NodeIndexMap lastActiveSignalDelay = new NodeIndexMap();
 	
 	// timeout for ACTIVE signals forwarding
-	private HashMap<String, Integer> nextActiveSignalForward = new HashMap<>();
+	private NodeIndexMap nextActiveSignalForward = new NodeIndexMap();
 	
 	// counter for suspicious blocks at current height, ie. submitted by correct creator, but not correct hashes
-	private HashMap<String, Integer> suspiciousBlockCounts = new HashMap<>(); 
+	private NodeIndexMap suspiciousBlockCounts = new NodeIndexMap(); 
 	
-	// keep track of connections along with their delays
-	protected LinkedHashMap<String, Integer> activeIncomingConnections = new LinkedHashMap<>();
-	protected LinkedHashMap<String, Integer> activeOutgoingConnections = new LinkedHashMap<>();
+	// keep track of connections along with their delays, in order of establishment
+	protected NodeIndexMap activeIncomingConnections = new NodeIndexMap();
+	protected NodeIndexMap activeOutgoingConnections = new NodeIndexMap();
 	
 	public SimulatedNode() {
 		// empty constructor for instantiation
@@ -92,16 +128,17 @@ public abstract class SimulatedNode {
 	
 	public void addNetwork(SimulatedNetwork network) {
 		this.network = network;
+		this.accessChain.setNetwork(network);
 		
 		if(network.initialAuths.size() > 0) {
 			this.accessChain.addInitial(network.initialAuths);
 		}
 
-		for(int a = 0; a <= 15; a++) {
+		for(int a = 0; a < NodeSignal.TYPE_COUNT; a++) {
 			this.signalsReceived.add(a, 0);
 		}
 		
-		for(int a = 0; a <= 15; a++) {
+		for(int a = 0; a < NodeSignal.TYPE_COUNT; a++) {
 			this.signalsSent.add(a, 0);
 		}
 		
@@ -114,6 +151,18 @@ public abstract class SimulatedNode {
 		this.uuid = id;
 	}
 	
+	/**
+	 * Dense index of the node, assigned by SimulatedNetwork.addNode
+	 * @param index
+	 */
+	public void setIndex(int index) {
+		this.index = index;
+	}
+	
+	public int getIndex() {
+		return this.index;
+	}
+	
 	/**
 	 * Executes the main thread, and returns a "delay" of execution + wait times
 	 * Simulates concurrent behaviour for internal parsers, and executes additional internal logic
@@ -128,6 +177,12 @@ public abstract class SimulatedNode {
 		// try to run incoming connections again in case there are any waiting signals
 		this.executeIncomingThreads(networkTick);
 		
+		// send ACKs batched for long enough
+		this.flushAcks(networkTick);
+		
+		// evict transactions that waited too long for a block
+		this.transactionPool.expire(networkTick);
+		
 		// assume that specific logic delay is distributed between multiple threads
 		delay += this.executeSpecificLogic(networkTick + delay)/this.maxMainThreads; 
 		
@@ -149,12 +204,21 @@ public abstract class SimulatedNode {
 		// check if current block has timeouts, only if there are transactions waiting
 		if(this.activeIncomingConnections.size() > 0 && this.transactionPool.size() > 0) {
 			if(this.internalChain.getLastReceived() + this.blockTimeout < this.network.currentTick) {
-				this.addPendingOutgoingToAll(new NodeSignalRequestBlock(this.getId(), this.internalChain.getCurrentHash()), delay);
+				if(this.network.chunkSync) {
+					this.addPendingOutgoingToAll(new NodeSignalRequestChunk(this.getId(), this.internalChain.getCurrentHash()), delay);
+				} else {
+					this.addPendingOutgoingToAll(new NodeSignalRequestBlock(this.getId(), this.internalChain.getCurrentHash()), delay);
+				}
 				this.internalChain.setLastReceived(networkTick);
 				this.forgerCounter++;
 				
 				if(this.forgerCounter > this.forgerTryout) {
-					this.suspiciousBlockCounts.put(this.accessChain.getNextCreator(), this.suspiciousBlockCounts.getOrDefault(this.accessChain.getNextCreator(), 0)+1);
+					int creator = this.network.getNodeIndex(this.accessChain.getNextCreator());
+					
+					if(creator != -1) {
+						this.suspiciousBlockCounts.put(creator, this.suspiciousBlockCounts.get(creator, 0)+1);
+					}
+					
 					this.accessChain.shiftForger();
 					this.forgerCounter = 0;
 					this.network.log.special(this.getId(), "BLOCK_ACCEPTANCE", "Shifting forger", networkTick);
@@ -163,29 +227,31 @@ public abstract class SimulatedNode {
 		}
 		
 		// go through waiting blocks and see if any can be used
-		ArrayList<String> waitingList = new ArrayList<>(this.waitingBlocks.keySet());
-		Iterator<String> waitingIter = waitingList.iterator();
-		
-		while(waitingIter.hasNext()) {
-			String block_hash = waitingIter.next();
-
-			if(this.waitingBlocks.get(block_hash).getHeight() < this.internalChain.height) {
-				this.waitingBlocks.remove(block_hash);
-				continue;
-			}
+		if(this.network.waitingBlockIndex) {
+			this.parseWaitingBlocks(delay);
+		} else {
+			ArrayList<Hash256> waitingList = new ArrayList<>(this.waitingBlocks.keySet());
+			Iterator<Hash256> waitingIter = waitingList.iterator();
 			
-			if(this.parseNewBlock(this.waitingBlocks.get(block_hash), this.waitingBlocks.get(block_hash).getCreator())) {
-				NodeSignal sig = new NodeSignalNewBlock(this.internalChain.getCurrentBlock().creator, this.internalChain.getCurrentBlock().toString());
-				sig.setForwardOrigin(this.getId());
-				this.addPendingOutgoingToAll(sig, delay);
-			};
+			while(waitingIter.hasNext()) {
+				Hash256 block_hash = waitingIter.next();
+				
+				if(this.waitingBlocks.get(block_hash).getHeight() < this.internalChain.height) {
+					this.waitingBlocks.remove(block_hash);
+					continue;
+				}
+				
+				if(this.parseNewBlock(this.waitingBlocks.get(block_hash), this.waitingBlocks.get(block_hash).getCreator())) {
+					this.forwardAcceptedBlock(delay);
+				};
+			}
 		}
 		
 		// ping ACTIVE signal to all connections after a set time
 		if(this.lastActiveSignal <= this.network.getCurrentTick()) {
 			NodeSignalActive sig = new NodeSignalActive(this.getId());
 			
-			if(this.accessChain.hasPermission(this.getId(), AuthBlockchain.WRITE_NODE)) {
+			if(this.accessChain.hasPermission(this.index, AuthBlockchain.WRITE_NODE)) {
 				// write nodes report their sent_at time
 				sig.setPayload(delay+"");
 			}
@@ -197,29 +263,29 @@ public abstract class SimulatedNode {
 		}
 		
 		// clean up used forward signals
-		ArrayList<String> sigList = new ArrayList<>(this.forwardSignals.keySet());
-		Iterator<String> sigIter = sigList.iterator();
-		
-		while(sigIter.hasNext()) {
-			String signal = sigIter.next();
-			OutgoingNodeSignal sig = this.forwardSignals.get(signal);
-			
-			if(sig.getWaitingForResponse() == 0) {
-				HashMap<String, Integer> stalled = sig.getStalled();
-				
-				if(stalled.size() > 0) {
-					for(String node: new ArrayList<String>(stalled.keySet())) {
-						this.connectionCooldownAt.put(node, networkTick + this.connectionCooldown);
-						if(this.activeIncomingConnections.containsKey(node)) {
-							this.closeDownloadFrom(node);
-						} 
-						if(this.activeOutgoingConnections.containsKey(node)) {
-							this.closeUploadTo(node);
-						}
-					}
+		if(this.network.retransmitWheel) {
+			// closing stalled connections may complete further signals
+			while(!this.completedSignals.isEmpty()) {
+				Hash256 signal = this.completedSignals.poll();
+				OutgoingNodeSignal sig = this.forwardSignals.get(signal);
+				
+				if(sig != null && sig.getWaitingForResponse() == 0) {
+					this.closeStalledConnections(sig, networkTick);
+					this.removeForwardSignal(signal);
 				}
+			}
+		} else {
+			ArrayList<Hash256> sigList = new ArrayList<>(this.forwardSignals.keySet());
+			Iterator<Hash256> sigIter = sigList.iterator();
+			
+			while(sigIter.hasNext()) {
+				Hash256 signal = sigIter.next();
+				OutgoingNodeSignal sig = this.forwardSignals.get(signal);
 				
-				this.forwardSignals.remove(signal);
+				if(sig.getWaitingForResponse() == 0) {
+					this.closeStalledConnections(sig, networkTick);
+					this.forwardSignals.remove(signal);
+				}
 			}
 		}
 
@@ -227,13 +293,9 @@ public abstract class SimulatedNode {
 		// try to refresh connections after a set time
 		if(lastConnectionCheck + this.network.connectionCheckDelay <= this.network.currentTick) {
 			// cleanup expired cooldowns
-			ArrayList<String> connectionCooldowns = new ArrayList<>(this.connectionCooldownAt.keySet());
-			Iterator<String> connectionCooldownsIter = connectionCooldowns.iterator();
-			
-			while(connectionCooldownsIter.hasNext()) {
-				String node_id = connectionCooldownsIter.next();
-				if(this.connectionCooldownAt.get(node_id) <= networkTick) {
-					this.connectionCooldownAt.remove(node_id);
+			for(int node: this.connectionCooldownAt.keys()) {
+				if(this.connectionCooldownAt.get(node, 0) <= networkTick) {
+					this.connectionCooldownAt.remove(node);
 				}
 			}
 			
@@ -254,7 +316,11 @@ public abstract class SimulatedNode {
 				
 				for(int a = 0; a < this.limitIncomingThreads; a++) {
 					if(this.waitingSignals.size() > 0) {
-						SimulatedJob job = this.waitingSignals.removeFirst();
+						SimulatedJob job = this.waitingSignals.poll(networkTick);
+						
+						if(job.getSignal().getType() == NodeSignal.REQUEST_REDIRECT_SIGNAL) {
+							this.queuedRedirects--;
+						}
 						
 						int delay = this.parseJob(job, networkTick);
 						
@@ -282,9 +348,7 @@ public abstract class SimulatedNode {
 	private int parseJob(SimulatedJob job, int delay) {
 		NodeSignal signal = job.getSignal();
 		
-		try {
-			this.receivedSinceLastUpdate += signal.toString().getBytes("UTF-8").length;
-		} catch(UnsupportedEncodingException ex) {}
+		this.receivedSinceLastUpdate += this.network.getWireSize(signal);
 		
 		//this.print("received "+signal.getHash()+", ie.'"+signal.toString()+"' ");
 		
@@ -300,23 +364,29 @@ public abstract class SimulatedNode {
 	 * @return int, delay for thread
 	 */
 	protected int parseSignal(NodeSignal signal, int processedAt) {
-		boolean isSentFromItself = this.getId().equals(signal.getForwardOrigin());
+		int origin = this.network.getNodeIndex(signal.getOrigin());
+		int forwardOrigin = this.network.getNodeIndex(signal.getForwardOrigin());
+		
+		boolean isSentFromItself = forwardOrigin == this.index;
 		
 		if(!isSentFromItself) {
 			// only send ACK to signals that require ACK
-			if(signal.type != NodeSignal.ACK_SIGNAL && signal.type != NodeSignal.BLOCK_REQUEST_SIGNAL
-				&& signal.type != NodeSignal.AUTH_BLOCK_REQUEST_SIGNAL && signal.type != NodeSignal.BLOCK_CHUNK_REQUEST_SIGNAL) {
+			if(signal.type != NodeSignal.ACK_SIGNAL && signal.type != NodeSignal.ACK_BATCH_SIGNAL && signal.type != NodeSignal.BLOCK_REQUEST_SIGNAL
+				&& signal.type != NodeSignal.AUTH_BLOCK_REQUEST_SIGNAL && signal.type != NodeSignal.BLOCK_CHUNK_REQUEST_SIGNAL
+				&& signal.type != NodeSignal.LIGHT_PROOF_REQUEST_SIGNAL && signal.type != NodeSignal.TRANSACTION_REQUEST_SIGNAL
+				// requested transaction payloads are not forwarded by the peer, it does not wait for an ACK
+				&& !(signal.type == NodeSignal.NEW_TRANSACTION_SIGNAL && this.network.transactionInventory)) {
 				
-				if(signal.getType() == NodeSignal.NEW_TRANSACTION_SIGNAL) {
+				if(signal.getType() == NodeSignal.NEW_TRANSACTION_SIGNAL && this.network.log.isSpecialWatched("ACK_TRANSACTION")) {
 					this.network.log.special(this.getId(), "ACK_TRANSACTION", "ACK for signal with hash: "+signal.getHash(), processedAt);
 				}
 				
-				if(signal.getType() == NodeSignal.NEW_BLOCK_SIGNAL) {
+				if(signal.getType() == NodeSignal.NEW_BLOCK_SIGNAL && this.network.log.isSpecialWatched("ACK_BLOCK")) {
 					this.network.log.special(this.getId(), "ACK_BLOCK", "ACK for signal with hash: "+signal.getHash(), processedAt);
 				}
 				
 				// Send an ACK signal to the sender, exclude ACKs to avoid endless confirmation loops
-				this.addPendingOutgoing(signal.getForwardOrigin(), new NodeSignalAck(this.getId(), signal), processedAt);
+				this.sendAck(forwardOrigin, signal, processedAt);
 			}
 		}
 		
@@ -330,62 +400,95 @@ public abstract class SimulatedNode {
 		
 		switch(signal.getType()) {
 			case NodeSignal.ACK_SIGNAL:
-				this.parseAckSignal(signal);
+				this.parseAckSignal(signal, origin);
+				
+				return this.network.nodeThreadDelay;
+			case NodeSignal.ACK_BATCH_SIGNAL:
+				this.parseAckBatchSignal((NodeSignalAckBatch)signal, origin);
 				
 				return this.network.nodeThreadDelay;
 			case NodeSignal.ACTIVE_SIGNAL:
 				// make sure we are not rewriting by a delayed ACTIVE signal
-				if(this.lastActiveSignalReceived.getOrDefault(signal.getOrigin(), 0) < processedAt && !signal.getOrigin().equals(this.getId())) {
-					this.lastActiveSignalReceived.put(signal.getOrigin(), processedAt);
+				if(this.lastActiveSignalReceived.get(origin, 0) < processedAt && origin != this.index) {
+					this.lastActiveSignalReceived.put(origin, processedAt);
 					
 					// forward ACTIVE signal for any WRITE node
-					if(this.accessChain.hasPermission(signal.getOrigin(), AuthBlockchain.WRITE_NODE)) {
+					if(this.accessChain.hasPermission(origin, AuthBlockchain.WRITE_NODE)) {
 						try {
-							this.lastActiveSignalDelay.put(signal.getOrigin(), Integer.parseInt(signal.getPayload()));
+							this.lastActiveSignalDelay.put(origin, Integer.parseInt(signal.getPayload()));
 						} catch(NumberFormatException e) {}
 						
 						// forward only if last ACTIVE signal was received around network-wide threshold
 						// if signal was received first it was forwarded - this solution prevents forwarding loops
-						if(this.nextActiveSignalForward.getOrDefault(signal.getOrigin(), 0) + this.network.activeSignalRepetition < processedAt) {
+						if(this.nextActiveSignalForward.get(origin, 0) + this.network.activeSignalRepetition < processedAt) {
 							NodeSignal sig = new NodeSignalActive(signal.getOrigin());
-							sig.setPayload(this.lastActiveSignalDelay.get(signal.getOrigin())+"");
+							sig.setPayload(this.lastActiveSignalDelay.containsKey(origin) ? this.lastActiveSignalDelay.get(origin, 0)+"" : "null");
 							
 							this.createForwardSignal(sig);
 							
-							this.nextActiveSignalForward.put(signal.getOrigin(), processedAt);
+							this.nextActiveSignalForward.put(origin, processedAt);
 						}
 					}
 					
-					this.network.log.special(this.getId(), "NODE_KNOWLEDGE", this.lastActiveSignalReceived.toString(), processedAt);
+					if(this.network.log.isSpecialWatched("NODE_KNOWLEDGE")) {
+						this.network.log.special(this.getId(), "NODE_KNOWLEDGE", this.describeNodeKnowledge(), processedAt);
+					}
 				} else {
-					this.print("Cannot update ACTIVE: "+this.lastActiveSignalReceived.getOrDefault(signal.getOrigin(), 0)+" "+signal.getOrigin());
+					this.print("Cannot update ACTIVE: "+this.lastActiveSignalReceived.get(origin, 0)+" "+signal.getOrigin());
 				}
 				
 				return this.network.nodeThreadDelay;
 				
 			case NodeSignal.NEW_TRANSACTION_SIGNAL:
 				Transaction trans = new Transaction(signal.getPayload());
-				String hash = trans.getHash();
+				Hash256 hash = trans.getHash();
 				
-				if(this.accessChain.hasPermission(signal.getOrigin(), AuthBlockchain.PUBLISH_NODE)) {
+				if(this.accessChain.hasPermission(origin, AuthBlockchain.PUBLISH_NODE)) {
+					if(this.network.transactionInventory) {
+						this.requestedTransactions.remove(hash);
+					}
+					
 					if(this.transactionWasNotReceivedBefore(signal.getHash(), hash)) {
-						this.transactionPool.put(hash, trans);
-						this.network.log.special(this.getId(), "TRANSACTION_POOL_LEN", "transaction pool: "+this.transactionPool.size(), processedAt);
-						
-						this.createForwardSignal(new NodeSignalNewTransaction(signal.getOrigin(), signal.getPayload()));
+						// seen even if the pool rejects it, so that announcements of it are not requested again
+						this.seenTransactions.add(hash, this.internalChain.getHeight()+this.transactionsBlockHeightCache);
 						
-						int blockToClearOn = this.internalChain.getHeight()+this.transactionsBlockHeightCache;
-						
-						HashSet<String> sameBlockTransactions = this.clearForwardTransactionsAt.getOrDefault(blockToClearOn, new HashSet<>());
-						sameBlockTransactions.add(hash);
-						this.clearForwardTransactionsAt.put(blockToClearOn, sameBlockTransactions);
+						// transactions rejected by the pool limits are not passed on
+						if(this.transactionPool.add(hash, trans, processedAt)) {
+							this.network.log.special(this.getId(), "TRANSACTION_POOL_LEN", "transaction pool: "+this.transactionPool.size(), processedAt);
+							
+							if(this.network.transactionInventory) {
+								this.createForwardSignal(new NodeSignalAnnounceTransaction(signal.getOrigin(), hash));
+							} else {
+								this.createForwardSignal(new NodeSignalNewTransaction(signal.getOrigin(), signal.getPayload()));
+							}
+						}
 					}
 				}
 				
 				return this.network.nodeThreadDelayNewTransaction;
 				
+			case NodeSignal.TRANSACTION_ANNOUNCE_SIGNAL:
+				if(this.accessChain.hasPermission(origin, AuthBlockchain.PUBLISH_NODE)) {
+					this.requestAnnouncedTransaction(signal.getPayloadHash(), forwardOrigin, processedAt);
+				}
+				
+				return this.network.nodeThreadDelay;
+				
+			case NodeSignal.TRANSACTION_REQUEST_SIGNAL:
+				// transactions already taken by a block are not served, the requester gets them with the block
+				Transaction requested = this.transactionPool.getTransaction(signal.getPayloadHash());
+				
+				if(requested != null) {
+					NodeSignal response = new NodeSignalNewTransaction(requested.getOrigin(), requested.toString());
+					response.setForwardOrigin(this.getId());
+					
+					this.addPendingOutgoing(origin, response, processedAt);
+				}
+				
+				return this.network.nodeThreadDelay;
+				
 			case NodeSignal.NEW_BLOCK_SIGNAL:
-				if(this.parseNewBlockSignal(signal)) {
+				if(this.parseNewBlockSignal(signal, origin)) {
 					this.createForwardSignal(new NodeSignalNewBlock(signal.getOrigin(), signal.getPayload()));
 					this.network.log.special(this.getId(), "BLOCK_HEIGHT", "blockchain height: "+this.internalChain.height, processedAt);
 					this.internalChain.setLastReceived(processedAt);
@@ -395,7 +498,7 @@ public abstract class SimulatedNode {
 				return this.network.nodeThreadDelay;
 				
 			case NodeSignal.NEW_AUTH_BLOCK_SIGNAL:
-				if(this.parseNewAuthBlockSignal(signal)) {
+				if(this.parseNewAuthBlockSignal(signal, origin)) {
 					this.createForwardSignal(new NodeSignalNewAuthBlock(signal.getOrigin(), signal.getPayload()));
 				}
 				
@@ -403,45 +506,80 @@ public abstract class SimulatedNode {
 			
 			// REQUEST signals
 			case NodeSignal.BLOCK_REQUEST_SIGNAL:
-				String caller = signal.getOrigin();
-				String block_hash = signal.getPayload();
+				int caller = origin;
+				Hash256 block_hash = signal.getPayloadHash();
 				
-				// if has block
+				// if has the block following the requested one
 				// then send Response
-				// else send Wait, send request to outgoing connections
+				// else send Deny
 				
-				if(this.accessChain.hasPermission(caller, AuthBlockchain.READ_NODE)) {
+				if(this.accessChain.hasPermission(caller, AuthBlockchain.READ_NODE) && this.isBlockReference(signal)) {
 					String prev = this.internalChain.findByPrevious(block_hash);
 					
-					if(prev == null) {
-						// send DENY signal, could not find the block in whole blockchain
+					if(this.internalChain.isPrunedAfter(block_hash)) {
+						// only headers are kept, send the caller to a node with full blocks
+						this.sendRedirect(caller, signal, processedAt);
+					} else if(prev == null) {
+						// send DENY signal, the block is unknown or the last one of the chain
 						this.addPendingOutgoing(caller, new NodeSignalResponseDeny(this.getId(), signal.getHash()), processedAt);
-					} else if(prev.equals("")) {
-						NodeSignal sig = new NodeSignalRequestBlock(signal.getOrigin(), block_hash);
-						sig.setForwardOrigin(this.getId());
-						
-						this.createForwardSignal(sig);
-						
-						//this.addPendingOutgoingToAll(sig, processedAt);
-						// Send WAIT signal to alert sender to stand-by
-						this.addPendingOutgoing(caller, new NodeSignalResponseWait(this.getId(), signal.getHash()), processedAt);
 					} else {
 						// send block encoded in string
 						this.addPendingOutgoing(caller, new NodeSignalResponseBlock(this.getId(), prev), processedAt);
 					}
 					
 				} else {
-					// send DENY signal if insufficient authorisation
+					// send DENY signal if insufficient authorisation or the payload is not a block hash
 					this.addPendingOutgoing(caller, new NodeSignalResponseDeny(this.getId(), signal.getHash()), processedAt);
 				}
 				
 				return this.network.nodeThreadDelay;
 				
+			case NodeSignal.BLOCK_CHUNK_REQUEST_SIGNAL:
+				if(this.accessChain.hasPermission(origin, AuthBlockchain.READ_NODE) && this.isBlockReference(signal)) {
+					if(this.internalChain.isPrunedAfter(signal.getPayloadHash())) {
+						this.sendRedirect(origin, signal, processedAt);
+						
+						return this.network.nodeThreadDelay;
+					}
+					
+					List<Block> run = this.internalChain.getRangeAfter(signal.getPayloadHash(), this.network.chunkSyncBlocks);
+					
+					if(run.size() > 0) {
+						// send all known blocks following the requested one, up to chunkSyncBlocks
+						this.addPendingOutgoing(origin, new NodeSignalResponseChunk(this.getId(), run), processedAt);
+						
+						return this.network.nodeThreadDelay;
+					}
+				}
+				
+				// send DENY signal, nothing newer than the requested block, not a block hash or insufficient authorisation
+				this.addPendingOutgoing(origin, new NodeSignalResponseDeny(this.getId(), signal.getHash()), processedAt);
+				
+				return this.network.nodeThreadDelay;
+				
+			case NodeSignal.LIGHT_PROOF_REQUEST_SIGNAL:
+				Hash256 transaction = signal.getPayloadHash();
+				Block including = transaction != null ? this.internalChain.findByTransaction(transaction) : null;
+				
+				if(this.accessChain.hasPermission(origin, AuthBlockchain.READ_NODE) && including != null && !including.isPruned()) {
+					// send only the header of the including block and path of the transaction to its Merkle root
+					this.addPendingOutgoing(origin, new NodeSignalResponseProof(this.getId(), transaction, including), processedAt);
+				} else {
+					// send DENY signal, transaction is not in the chain (yet), pruned or insufficient authorisation
+					this.addPendingOutgoing(origin, new NodeSignalResponseDeny(this.getId(), signal.getHash()), processedAt);
+				}
+				
+				return this.network.nodeThreadDelay;
+				
 			// RESPONSE signals
+			case NodeSignal.BLOCK_CHUNK_RESPONSE_SIGNAL:
+				this.parseChunkResponse((NodeSignalResponseChunk) signal, origin, processedAt);
+				
+				return this.network.nodeThreadDelay;
+				
 			case NodeSignal.BLOCK_RESPONSE_SIGNAL:
 				if(signal.getPayload() != null) {
-					Block new_block = new Block();
-					new_block.decodeNewBlock(signal.getPayload());
+					Block new_block = this.network.decodeBlock(signal.getPayload());
 					
 					//this.print(signal.getOrigin()+" responded with block height "+new_block.getHeight());
 					
@@ -452,20 +590,40 @@ public abstract class SimulatedNode {
 			
 			case NodeSignal.REQUEST_DENY_SIGNAL:
 				// assumes to be a reaction to a request
-				OutgoingNodeSignal sigD = this.forwardSignals.getOrDefault(signal.getPayload(), null);
+				OutgoingNodeSignal sigD = this.forwardSignals.getOrDefault(signal.getPayloadHash(), null);
 				
 				if(sigD != null) {
-					sigD.markNodeFinalResponseReceived(signal.getOrigin());
+					sigD.markNodeFinalResponseReceived(origin);
+					this.checkForwardSignalCompleted(sigD);
+				}
+				
+				return this.network.nodeThreadDelay;
+				
+			case NodeSignal.REQUEST_REDIRECT_SIGNAL:
+				int full = this.network.getNodeIndex(signal.getPayload());
+				
+				// ask the full node for blocks following the tip, once per height unless it does not answer in time,
+				// without a connection to it the usual block timeout asks all peers
+				if(full != -1 && full != this.index && (this.redirectedHeight != this.internalChain.getHeight() || this.redirectedAt + this.blockTimeout < processedAt)
+						&& this.connectForDownload(full)) {
+					this.redirectedHeight = this.internalChain.getHeight();
+					this.redirectedAt = processedAt;
+					
+					if(this.network.chunkSync) {
+						this.addPendingOutgoing(full, new NodeSignalRequestChunk(this.getId(), this.internalChain.getCurrentHash()), processedAt);
+					} else {
+						this.addPendingOutgoing(full, new NodeSignalRequestBlock(this.getId(), this.internalChain.getCurrentHash()), processedAt);
+					}
 				}
 				
 				return this.network.nodeThreadDelay;
 				
 			case NodeSignal.REQUEST_WAIT_SIGNAL:
 				// assumes to be a reaction to a request
-				OutgoingNodeSignal sigW = this.forwardSignals.getOrDefault(signal.getPayload(), null);
+				OutgoingNodeSignal sigW = this.forwardSignals.getOrDefault(signal.getPayloadHash(), null);
 				
 				if(sigW != null) {
-					sigW.markNodePingResponseReceived(signal.getOrigin(), processedAt);
+					sigW.markNodePingResponseReceived(origin, processedAt);
 				}
 				
 				return this.network.nodeThreadDelay;
@@ -475,26 +633,174 @@ public abstract class SimulatedNode {
 		}
 	}
 
-	protected boolean parseAckSignal(NodeSignal signal) {
-		OutgoingNodeSignal sig = this.forwardSignals.getOrDefault(signal.getPayload(), null);
+	protected boolean parseAckSignal(NodeSignal signal, int origin) {
+		this.acknowledgeForwardSignal(signal.getPayloadHash(), origin);
+		
+		return true;
+	}
+	
+	/**
+	 * Resolves all ACKs of a batch against forwardSignals
+	 * @param signal
+	 * @param origin
+	 * @return boolean
+	 */
+	protected boolean parseAckBatchSignal(NodeSignalAckBatch signal, int origin) {
+		for(Hash256 hash: signal.getHashes()) {
+			this.acknowledgeForwardSignal(hash, origin);
+		}
+		
+		return true;
+	}
+	
+	private void acknowledgeForwardSignal(Hash256 hash, int origin) {
+		OutgoingNodeSignal sig = this.forwardSignals.getOrDefault(hash, null);
 		
 		// mark ACK as received, delete forward signal if all responded
 		if(sig != null) {
-			sig.markNodeFinalResponseReceived(signal.getOrigin());
+			sig.markNodeFinalResponseReceived(origin);
 			
 			if(sig.getWaitingForResponse() == 0) {
-				this.forwardSignals.remove(signal.getPayload());
+				this.removeForwardSignal(hash);
+			}
+		}
+	}
+	
+	/**
+	 * Verifies a run of blocks from a BLOCK_CHUNK_RESPONSE and appends it to the chain.
+	 * Asks the sender for the next run right away if this one was full, instead of waiting for the block timeout.
+	 * 
+	 * @param signal
+	 * @param origin, index of sender
+	 * @param processedAt
+	 */
+	private void parseChunkResponse(NodeSignalResponseChunk signal, int origin, int processedAt) {
+		List<Block> blocks = signal.getBlocks(this.network);
+		
+		if(blocks == null || blocks.size() == 0) {
+			return;
+		}
+		
+		// the run must follow a block of the own chain, blocks of another branch cannot be appended
+		Block first = blocks.get(0);
+		Block anchor = this.internalChain.getByHeight(first.getHeight() - 1);
+		
+		if(first.getHeight() == 1 ? first.getPreviousHash() != null : anchor == null || !anchor.getHash().equals(first.getPreviousHash())) {
+			this.network.log.special(this.getId(), "BLOCK_SYNC", "Chunk from "+signal.getOrigin()+" does not follow the chain at height "+(first.getHeight() - 1), processedAt);
+			return;
+		}
+		
+		// blocks must link into a single run, each block is then verified by parseNewBlock
+		for(int a = 1; a < blocks.size(); a++) {
+			Block previous = blocks.get(a - 1);
+			
+			if(!previous.getHash().equals(blocks.get(a).getPreviousHash()) || previous.getHeight() + 1 != blocks.get(a).getHeight()) {
+				this.network.log.special(this.getId(), "BLOCK_SYNC", "Broken chunk from "+signal.getOrigin()+" at height "+previous.getHeight(), processedAt);
+				return;
+			}
+		}
+		
+		int accepted = 0;
+		
+		for(Block block: blocks) {
+			// skip blocks received since the request
+			if(block.getHeight() <= this.internalChain.getHeight()) {
+				continue;
+			}
+			
+			if(!this.parseNewBlock(block, block.getCreator())) {
+				break;
+			}
+			
+			accepted++;
+		}
+		
+		if(accepted > 0) {
+			this.internalChain.setLastReceived(processedAt);
+			this.network.log.special(this.getId(), "BLOCK_SYNC", "Chunk of "+accepted+" blocks from "+signal.getOrigin()+", new chain height of "+this.internalChain.getHeight(), processedAt);
+			
+			if(blocks.size() >= this.network.chunkSyncBlocks) {
+				this.addPendingOutgoing(origin, new NodeSignalRequestChunk(this.getId(), this.internalChain.getCurrentHash()), processedAt);
 			}
 		}
+	}
+	
+	/**
+	 * Points the caller of a request for pruned blocks to the next block creator, WRITE nodes keep full blocks
+	 * 
+	 * @param caller, index of requesting node
+	 * @param signal, request
+	 * @param processedAt
+	 */
+	private void sendRedirect(int caller, NodeSignal signal, int processedAt) {
+		String full = this.accessChain.getNextCreator();
+		
+		if(full != null) {
+			this.addPendingOutgoing(caller, new NodeSignalResponseRedirect(this.getId(), full), processedAt);
+		} else {
+			this.addPendingOutgoing(caller, new NodeSignalResponseDeny(this.getId(), signal.getHash()), processedAt);
+		}
+	}
+	
+	/**
+	 * @param node, index of node
+	 * @return boolean, true if signals can be sent to the node, a download connection from it is opened if there is none
+	 */
+	private boolean connectForDownload(int node) {
+		if(this.activeOutgoingConnections.containsKey(node) || this.activeIncomingConnections.containsKey(node)) {
+			return true;
+		}
+		
+		if(!this.hasFreeDownloadSlot() || !this.network.establishDownloadConnection(this.index, node)) {
+			return false;
+		}
+		
+		this.activeIncomingConnections.put(node, this.network.getConnectionDelay(node));
+		this.lastActiveSignalReceived.put(node, this.network.getCurrentTick());
 		
 		return true;
 	}
 	
-	private boolean parseNewBlockSignal(NodeSignal signal) {
-		Block new_block = new Block();
-		new_block.decodeNewBlock(signal.getPayload());
+	/**
+	 * Tries waiting blocks following the tip, only when the tip or the next forger changed since the last try,
+	 * as other waiting blocks cannot extend the chain and forgers decide which block following the tip is accepted
+	 * @param delay
+	 */
+	private void parseWaitingBlocks(int delay) {
+		while(!Objects.equals(this.internalChain.getCurrentHash(), this.waitingCheckedTip) || !Objects.equals(this.accessChain.getNextCreator(), this.waitingCheckedForger)) {
+			this.waitingCheckedTip = this.internalChain.getCurrentHash();
+			this.waitingCheckedForger = this.accessChain.getNextCreator();
+			this.waitingIndex.removeBelow(this.internalChain.getHeight());
+			
+			for(Block block: new ArrayList<>(this.waitingIndex.getByPrevious(this.waitingCheckedTip))) {
+				if(this.parseNewBlock(block, block.getCreator())) {
+					this.forwardAcceptedBlock(delay);
+					
+					// tip moved, blocks following it are tried next
+					break;
+				}
+			}
+		}
+	}
+	
+	private void forwardAcceptedBlock(int delay) {
+		NodeSignal sig = new NodeSignalNewBlock(this.internalChain.getCurrentBlock().creator, this.internalChain.getCurrentBlock().toString());
+		sig.setForwardOrigin(this.getId());
+		this.addPendingOutgoingToAll(sig, delay);
+	}
+	
+	private void addWaitingBlock(Block block) {
+		if(this.network.waitingBlockIndex) {
+			this.waitingIndex.add(block);
+		} else {
+			this.waitingBlocks.put(block.getHash(), block);
+		}
+	}
+	
+	private boolean parseNewBlockSignal(NodeSignal signal, int origin) {
+		Block new_block = this.network.decodeBlock(signal.getPayload());
 		
-		if(this.accessChain.hasPermission(signal.getOrigin(), AuthBlockchain.WRITE_NODE) && this.accessChain.hasPermission(new_block.getCreator(), AuthBlockchain.WRITE_NODE)) {	
+		if(this.accessChain.hasPermission(origin, AuthBlockchain.WRITE_NODE) && this.accessChain.hasPermission(new_block.getCreator(), AuthBlockchain.WRITE_NODE)) {	
 			return this.parseNewBlock(new_block, new_block.getCreator());
 		} else {
 			// sending node does not have permissions to create blocks
@@ -522,7 +828,7 @@ public abstract class SimulatedNode {
 				
 				return true;
 			} else {
-				this.waitingBlocks.put(new_block.getHash(), new_block);
+				this.addWaitingBlock(new_block);
 				// REFUSE to accept and forward block, something is not correct
 				return false;
 			}
@@ -530,7 +836,7 @@ public abstract class SimulatedNode {
 			if(isChainIntact) {
 				// this block seems to be next in line, but not with correct creator
 				this.network.log.special(this.getId(), "BLOCK_ACCEPTANCE", "Incorrect block received from "+creator+", height "+new_block.height, this.network.getCurrentTick());
-				this.waitingBlocks.put(new_block.getHash(), new_block);
+				this.addWaitingBlock(new_block);
 				
 				// do not forward, potentially suspicious block
 				return false;
@@ -539,14 +845,14 @@ public abstract class SimulatedNode {
 				// check if forger could have created this block in the future (e.g. 5 more blocks into the future)
 				if(this.accessChain.isFutureBlock(creator) && !this.internalChain.suspiciousFuture(new_block.getHeight())) {
 					// keep in memory for future use
-					this.waitingBlocks.put(new_block.getHash(), new_block);
+					this.addWaitingBlock(new_block);
 					
 					this.network.log.special(this.getId(), "BLOCK_ACCEPTANCE", "Future block received from "+creator+", height "+new_block.height, this.network.getCurrentTick());
 					
 					// do not forward, potentially suspicious block
 					return false;
 				} else {
-					this.waitingBlocks.put(new_block.getHash(), new_block);
+					this.addWaitingBlock(new_block);
 					// block was received suspiciously far for the future; every WRITE should submit after receiving previous
 					// REFUSE to accept and forward, highly suspicious block
 					return false;
@@ -556,8 +862,13 @@ public abstract class SimulatedNode {
 	}
 	
 	private void cleanupForkBlocks(Block new_block) {
-		List<String> keys = new ArrayList<String>(this.waitingBlocks.keySet());
-		for(String hash: keys) {
+		if(this.network.waitingBlockIndex) {
+			this.waitingIndex.removeByPrevious(new_block.getPrevious());
+			return;
+		}
+		
+		List<Hash256> keys = new ArrayList<Hash256>(this.waitingBlocks.keySet());
+		for(Hash256 hash: keys) {
 			if(this.waitingBlocks.get(hash).getPrevious().equals(new_block.getPrevious())) {
 				this.waitingBlocks.remove(hash);
 			}
@@ -565,34 +876,37 @@ public abstract class SimulatedNode {
 	}
 
 	private void handleNewBlockParsing(Block new_block) {
-		// remove block transactions from transactionPool
-		String[] transactions = new_block.getPayload().split("\\|\\|");
+		// nodes without WRITE permission keep only headers of old chunks, so they follow the chunks sealed by block creators
+		boolean pruning = this.network.pruneDepth > 0 && !this.accessChain.hasPermission(this.index, AuthBlockchain.WRITE_NODE);
 		
-		HashSet<String> sameBlockTransactions = this.clearForwardTransactionsAt.getOrDefault(this.internalChain.getHeight(), new HashSet<>());
-		
-		for(String transaction: transactions) {
-			Transaction trans = new Transaction(transaction);
-			
-			this.transactionPool.remove(trans.getHash());
-			sameBlockTransactions.add(trans.getHash());
-			this.acceptedTransactions++;
+		if(pruning) {
+			this.internalChain.setSealingReceivedChunks(true);
 		}
 		
 		this.internalChain.addBlock(new_block);
 		
-		this.clearForwardTransactionsAt.put(this.internalChain.getHeight()+this.transactionsBlockHeightCache, sameBlockTransactions);
+		// transaction hashes of older blocks expire
+		this.seenTransactions.expire(this.internalChain.getHeight());
+		
+		// remove block transactions from transactionPool
+		for(Hash256 hash: new_block.getTransactionHashes()) {
+			this.transactionPool.remove(hash);
+			this.seenTransactions.add(hash, this.internalChain.getHeight()+this.transactionsBlockHeightCache);
+			this.acceptedTransactions++;
+		}
 		
-		// remove transaction hashes that should be expired
-		this.clearForwardTransactionsAt.remove(this.internalChain.getHeight());
+		if(pruning) {
+			this.internalChain.pruneChunks(this.network.pruneDepth);
+		}
 		
 		this.accessChain.shiftForger();
 	}
 	
-	private boolean parseNewAuthBlockSignal(NodeSignal signal) {
-		Block block = new Block();
+	private boolean parseNewAuthBlockSignal(NodeSignal signal, int origin) {
+		Block block = new Block(this.network.merkleBlocks);
 		block.decodeNewBlock(signal.getPayload());
 		
-		if(this.accessChain.hasPermission(signal.getOrigin(), AuthBlockchain.WRITE_AUTH_NODE) && this.accessChain.hasPermission(block.getCreator(), AuthBlockchain.WRITE_AUTH_NODE)) {	
+		if(this.accessChain.hasPermission(origin, AuthBlockchain.WRITE_AUTH_NODE) && this.accessChain.hasPermission(block.getCreator(), AuthBlockchain.WRITE_AUTH_NODE)) {	
 			if(this.accessChain.isNextAuthCreator(signal.getOrigin())) {
 				this.accessChain.addBlock(block);
 				this.accessChain.shiftAuthForger();
@@ -606,49 +920,157 @@ public abstract class SimulatedNode {
 		}
 	}
 	
-	private boolean signalNotWaitingForAck(String signal_hash) {
-		return !this.forwardSignals.containsKey(signal_hash);
-	}
-	
-	private boolean transactionWasNotReceivedBefore(String signal_hash, String trans_hash) {
-		if(this.signalNotWaitingForAck(signal_hash)) {
-			for(Integer block_id: this.clearForwardTransactionsAt.keySet()) {
-				if(this.clearForwardTransactionsAt.get(block_id).contains(trans_hash)) {
-					return false;
-				}
+	/**
+	 * Requests the payload of an announced transaction from the announcing peer, unless the transaction
+	 * was seen or is already requested from another peer that still has time to answer
+	 * @param hash, transaction hash
+	 * @param peer, index of the announcing node
+	 * @param processedAt
+	 */
+	private void requestAnnouncedTransaction(Hash256 hash, int peer, int processedAt) {
+		// drop requests that were answered or can be repeated
+		while(!this.requestedOrder.isEmpty()) {
+			Integer retryAt = this.requestedTransactions.get(this.requestedOrder.peekFirst());
+			
+			if(retryAt != null && retryAt >= processedAt) {
+				break;
 			}
 			
-			return true;
-		} else {
-			return false;
+			Hash256 expired = this.requestedOrder.removeFirst();
+			
+			if(retryAt != null) {
+				this.requestedTransactions.remove(expired);
+			}
+		}
+		
+		if(hash == null || peer == -1 || this.seenTransactions.contains(hash)) {
+			return;
+		}
+		
+		Integer retryAt = this.requestedTransactions.get(hash);
+		
+		if(retryAt != null && retryAt >= processedAt) {
+			return;
 		}
+		
+		// same wait as for a resent signal (see OutgoingNodeSignal)
+		this.requestedTransactions.put(hash, processedAt + (int)(this.getConnectionDelay(peer) * 2.5));
+		this.requestedOrder.addLast(hash);
+		
+		this.addPendingOutgoing(peer, new NodeSignalRequestTransaction(this.getId(), hash), processedAt);
+	}
+	
+	private boolean signalNotWaitingForAck(Hash256 signal_hash) {
+		return !this.forwardSignals.containsKey(signal_hash);
+	}
+	
+	private boolean transactionWasNotReceivedBefore(Hash256 signal_hash, Hash256 trans_hash) {
+		return this.signalNotWaitingForAck(signal_hash) && !this.seenTransactions.contains(trans_hash);
 	}
 
 	private void createForwardSignal(NodeSignal copied_signal) {
 		copied_signal.setForwardOrigin(this.getId());
 		
-		this.forwardSignals.put(copied_signal.getHash(), new OutgoingNodeSignal(copied_signal, copied_signal.getForwardOrigin(), this.getId(), this.activeOutgoingConnections.keySet(), this));
+		int origin = this.network.getNodeIndex(copied_signal.getOrigin());
+		
+		this.putForwardSignal(copied_signal.getHash(), new OutgoingNodeSignal(copied_signal, origin, this.index, this.index, this.activeOutgoingConnections.keys(), this));
 	}
 	
 	private void createForwardSignalToAll(NodeSignal copied_signal) {
 		copied_signal.setForwardOrigin(this.getId());
 		
-		HashSet<String> conns = new HashSet<>();
-		conns.addAll(this.activeIncomingConnections.keySet());
-		conns.addAll(this.activeOutgoingConnections.keySet());
+		// duplicates are dropped by OutgoingNodeSignal
+		int[] incoming = this.activeIncomingConnections.keys();
+		int[] outgoing = this.activeOutgoingConnections.keys();
+		
+		int[] conns = Arrays.copyOf(incoming, incoming.length + outgoing.length);
+		System.arraycopy(outgoing, 0, conns, incoming.length, outgoing.length);
+		
+		int origin = this.network.getNodeIndex(copied_signal.getOrigin());
+		
+		this.putForwardSignal(copied_signal.getHash(), new OutgoingNodeSignal(copied_signal, origin, this.index, this.index, conns, this));
+	}
+	
+	private void putForwardSignal(Hash256 hash, OutgoingNodeSignal sig) {
+		OutgoingNodeSignal replaced = this.forwardSignals.put(hash, sig);
+		
+		if(this.network.retransmitWheel) {
+			if(replaced != null) {
+				replaced.cancelTimers();
+			}
+			
+			sig.scheduleAll(this.retransmissions, this.network.currentTick);
+			this.checkForwardSignalCompleted(sig);
+		}
+	}
+	
+	/**
+	 * Removes a forward signal with its pending retransmissions
+	 * @param hash
+	 */
+	protected void removeForwardSignal(Hash256 hash) {
+		OutgoingNodeSignal sig = this.forwardSignals.remove(hash);
+		
+		if(sig != null) {
+			sig.cancelTimers();
+		}
+	}
+	
+	/**
+	 * Queues the signal for clean up once no connection is waiting for it, with retransmission timers only,
+	 * otherwise all forward signals are checked on each main thread execution
+	 * @param sig
+	 */
+	private void checkForwardSignalCompleted(OutgoingNodeSignal sig) {
+		if(this.network.retransmitWheel && sig.getWaitingForResponse() == 0) {
+			this.completedSignals.add(sig.getSignal().getHash());
+		}
+	}
+	
+	/**
+	 * Cools down and closes connections that never responded to the signal
+	 * @param sig
+	 * @param networkTick
+	 */
+	private void closeStalledConnections(OutgoingNodeSignal sig, int networkTick) {
+		int[] stalled = sig.getStalled();
 		
-		this.forwardSignals.put(copied_signal.getHash(), new OutgoingNodeSignal(copied_signal, copied_signal.getForwardOrigin(), this.getId(), conns, this));
+		if(stalled.length > 0) {
+			for(int node: stalled) {
+				this.connectionCooldownAt.put(node, networkTick + this.connectionCooldown);
+				if(this.activeIncomingConnections.containsKey(node)) {
+					this.closeDownloadFrom(node);
+				} 
+				if(this.activeOutgoingConnections.containsKey(node)) {
+					this.closeUploadTo(node);
+				}
+			}
+		}
 	}
 	
 	protected void performSignalForward(int networkTick) {
-		for(String node_id: this.forwardSignals.keySet()) {
-			OutgoingNodeSignal sig = this.forwardSignals.get(node_id);
+		if(this.network.retransmitWheel) {
+			// only signals due for a retransmission to some connection
+			for(RetransmitWheel.Timer timer: this.retransmissions.advance(networkTick)) {
+				OutgoingNodeSignal sig = timer.getSignal();
+				
+				if(sig.resend(timer, networkTick, this.signalRepetitionThreshold)) {
+					this.addPendingOutgoing(timer.getNode(), sig.getSignal(), networkTick);
+				} else {
+					this.checkForwardSignalCompleted(sig);
+				}
+			}
+			
+			return;
+		}
+		
+		for(OutgoingNodeSignal sig: this.forwardSignals.values()) {
 			
 			sig.removeStalledConnections(this.signalRepetitionThreshold);
 			
-			ArrayList<String> nodesToSendTo = sig.shouldBeSentAgain(networkTick);
+			int[] nodesToSendTo = sig.shouldBeSentAgain(networkTick);
 			
-			for(String send_to: nodesToSendTo) {
+			for(int send_to: nodesToSendTo) {
 				this.addPendingOutgoing(send_to, sig.getSignal(), networkTick);
 			}
 		}
@@ -673,15 +1095,10 @@ public abstract class SimulatedNode {
 		}
 		
 		// check for stale connections
-		ArrayList<String> upList = new ArrayList<>(this.activeOutgoingConnections.keySet());
-		Iterator<String> upIter = upList.iterator();
-		
-		while(upIter.hasNext()) {
-			String out = upIter.next();
-			
-			if(this.lastActiveSignalReceived.getOrDefault(out, 0) + this.connectionStale < this.network.getCurrentTick()) {
-				if(this.network.closeUploadConnection(this.getId(), out)) {
-					this.network.log.regular(this.getId(), "terminated UP to "+out, this.network.getCurrentTick());
+		for(int out: this.activeOutgoingConnections.keys()) {
+			if(this.lastActiveSignalReceived.get(out, 0) + this.connectionStale < this.network.getCurrentTick()) {
+				if(this.network.closeUploadConnection(this.index, out)) {
+					this.network.log.regular(this.getId(), "terminated UP to "+this.network.getNodeId(out), this.network.getCurrentTick());
 					this.activeIncomingConnections.remove(out);
 					this.connectionCooldownAt.put(out, this.network.currentTick + this.connectionCooldown);
 				}
@@ -693,21 +1110,17 @@ public abstract class SimulatedNode {
 		this.sentSinceLastUpdate = 0;
 		
 		if(this.activeOutgoingConnections.size() < this.maxOutgoing) {
-			String newNode = this.network.establishNewUploadConnection(this.getId());
-			if(newNode != null) {
+			int newNode = this.network.establishNewUploadConnection(this.index);
+			if(newNode != -1) {
 				this.activeOutgoingConnections.put(newNode, this.network.getConnectionDelay(newNode));
 				this.lastActiveSignalReceived.put(newNode, this.network.getCurrentTick());
 			}
 		} else if(this.activeOutgoingConnections.size() > this.maxOutgoing) {
-			ArrayList<String> connectionList = new ArrayList<>(this.activeOutgoingConnections.keySet());
-			Iterator<String> connectionIterator = connectionList.iterator();
-			
-			while(connectionIterator.hasNext()) {
-				String node = connectionIterator.next();
+			for(int node: this.activeOutgoingConnections.keys()) {
 				if(this.activeOutgoingConnections.size() <= this.maxOutgoing) {
 					break;
 				} else {
-					if(this.network.closeUploadConnection(this.getId(), node)) {
+					if(this.network.closeUploadConnection(this.index, node)) {
 						this.activeOutgoingConnections.remove(node);	
 					}
 				}
@@ -734,15 +1147,10 @@ public abstract class SimulatedNode {
 		}
 		
 		// check for stale connections
-		ArrayList<String> downList = new ArrayList<>(this.activeIncomingConnections.keySet());
-		Iterator<String> downIter = downList.iterator();
-		
-		while(downIter.hasNext()) {
-			String out = downIter.next();
-			
-			if(this.lastActiveSignalReceived.getOrDefault(out, 0) + this.connectionStale < this.network.getCurrentTick()) {
-				if(this.network.closeDownloadConnection(this.getId(), out)) {
-					this.network.log.regular(this.getId(), "terminated DOWN from "+out, this.network.getCurrentTick());
+		for(int out: this.activeIncomingConnections.keys()) {
+			if(this.lastActiveSignalReceived.get(out, 0) + this.connectionStale < this.network.getCurrentTick()) {
+				if(this.network.closeDownloadConnection(this.index, out)) {
+					this.network.log.regular(this.getId(), "terminated DOWN from "+this.network.getNodeId(out), this.network.getCurrentTick());
 					this.activeIncomingConnections.remove(out);
 					this.connectionCooldownAt.put(out, this.network.currentTick + this.connectionCooldown);
 				}
@@ -755,22 +1163,18 @@ public abstract class SimulatedNode {
 		
 		if(this.activeIncomingConnections.size() < this.maxIncoming) {
 			this.print("Will add "+this.activeIncomingConnections.toString());
-			String newNode = this.network.establishNewDownloadConnection(this.getId());
-			if(newNode != null) {
+			int newNode = this.network.establishNewDownloadConnection(this.index);
+			if(newNode != -1) {
 				this.activeIncomingConnections.put(newNode, this.network.getConnectionDelay(newNode));
 				this.lastActiveSignalReceived.put(newNode, this.network.getCurrentTick());
 			}
 		} else if(this.activeIncomingConnections.size() > this.maxIncoming) {
 			this.print("Will close");
-			ArrayList<String> connectionList = new ArrayList<>(this.activeIncomingConnections.keySet());
-			Iterator<String> connectionIterator = connectionList.iterator();
-			
-			while(connectionIterator.hasNext()) {
-				String node = connectionIterator.next();
+			for(int node: this.activeIncomingConnections.keys()) {
 				if(this.activeIncomingConnections.size() <= this.maxIncoming) {
 					break;
 				} else {
-					if(this.network.closeDownloadConnection(this.getId(), node)) {
+					if(this.network.closeDownloadConnection(this.index, node)) {
 						this.activeIncomingConnections.remove(node);
 					}
 				}
@@ -778,10 +1182,10 @@ public abstract class SimulatedNode {
 		}
 	}
 	
-	protected boolean closeDownloadFrom(String source) {
+	protected boolean closeDownloadFrom(int source) {
 		if(this.activeIncomingConnections.containsKey(source)) {
 			this.removeForwardSignalsToNode(source);
-			this.network.log.regular(this.getId(), "closed DOWNLOAD from "+source, this.network.currentTick);
+			this.network.log.regular(this.getId(), "closed DOWNLOAD from "+this.network.getNodeId(source), this.network.currentTick);
 			this.connectionCooldownAt.put(source, this.network.currentTick + this.connectionCooldown);
 			this.activeIncomingConnections.remove(source);
 			return true;
@@ -790,11 +1194,11 @@ public abstract class SimulatedNode {
 		return false;
 	}
 	
-	protected boolean closeUploadTo(String target) {
+	protected boolean closeUploadTo(int target) {
 		if(this.activeOutgoingConnections.containsKey(target)) {
 			this.removeForwardSignalsToNode(target);
 			this.activeOutgoingConnections.remove(target);
-			this.network.log.regular(this.getId(), "closed UPLOAD to "+target, this.network.currentTick);
+			this.network.log.regular(this.getId(), "closed UPLOAD to "+this.network.getNodeId(target), this.network.currentTick);
 			this.connectionCooldownAt.put(target, this.network.currentTick + this.connectionCooldown);
 			return true;
 		}
@@ -802,12 +1206,36 @@ public abstract class SimulatedNode {
 		return false;
 	}
 	
-	private void removeForwardSignalsToNode(String node) {
+	private void removeForwardSignalsToNode(int node) {
 		for(OutgoingNodeSignal sig: this.forwardSignals.values()) {
 			sig.markNodeFinalResponseReceived(node);
+			this.checkForwardSignalCompleted(sig);
 		}
 	}
 	
+	/**
+	 * Tells if the next main thread execution touches only the state of this node,
+	 * so that it can run concurrently with other such nodes (see SimulatedNetwork.setParallelism).
+	 * Connection refreshes reach into other nodes and the shared RNG, so they have to run alone,
+	 * as well as queued redirects, which may open a download connection to the full node.
+	 * 
+	 * @param networkTick
+	 * @return boolean
+	 */
+	public boolean canExecuteInParallel(int networkTick) {
+		return this.queuedRedirects == 0 && this.lastConnectionCheck + this.network.connectionCheckDelay > networkTick;
+	}
+	
+	/**
+	 * Called in node order right before a concurrent main thread execution.
+	 * Child classes using the shared network RNG should draw here to keep the sequential draw order.
+	 * 
+	 * @param networkTick
+	 */
+	public void prepareParallelExecution(int networkTick) {
+		// nothing to prepare by default
+	}
+	
 	/**
 	 * Allows child classes to specify their own logic
 	 * Used for transactions, blocks, etc.
@@ -816,7 +1244,11 @@ public abstract class SimulatedNode {
 	protected abstract int executeSpecificLogic(int networkTick);
 	
 	public void executeIncomingConnection(SimulatedJob job, int networkTick) {
-		this.waitingSignals.addFirst(job);
+		if(job.getSignal().getType() == NodeSignal.REQUEST_REDIRECT_SIGNAL) {
+			this.queuedRedirects++;
+		}
+		
+		this.waitingSignals.add(job, networkTick);
 		this.executeIncomingThreads(networkTick);
 	}
 	
@@ -834,27 +1266,113 @@ public abstract class SimulatedNode {
 		this.pendingOutgoing.clear();
 	}
 	
+	/**
+	 * @param signal, block or chunk request
+	 * @return boolean, true if the payload is a block hash or "INIT" for the start of the chain
+	 */
+	private boolean isBlockReference(NodeSignal signal) {
+		return signal.getPayloadHash() != null || "INIT".equals(signal.getPayload());
+	}
+	
 	/**
 	 * Adds a new pending outgoing job for a particular target with proper connection costs
 	 * 
-	 * @param target
+	 * @param target, index of node
 	 * @param signal
 	 * @param delay
 	 */
-	protected void addPendingOutgoing(String target, NodeSignal signal, int delay) {
+	protected void addPendingOutgoing(int target, NodeSignal signal, int delay) {
 		this.signalsSent.set(signal.getType(), this.signalsSent.get(signal.getType())+1);
 		
-		try {
-			this.sentSinceLastUpdate += signal.toString().getBytes("UTF-8").length;
-		} catch(UnsupportedEncodingException ex) {}
+		int textSize = signal.getTextSize();
+		
+		this.sentTextBytes += textSize;
+		this.sentTextBytesByType[signal.getType()] += textSize;
+		
+		// the binary encoding is only measured when it is accounted or reported
+		if(this.network.isMeasuringBinarySize()) {
+			int binarySize = signal.getBinarySize(this.network);
+			
+			this.sentBinaryBytes += binarySize;
+			this.sentSinceLastUpdate += this.network.isBinaryWireFormat() ? binarySize : textSize;
+		} else {
+			this.sentSinceLastUpdate += textSize;
+		}
 		
 		this.pendingOutgoing.add(new SimulatedJob(signal, target, delay+this.getConnectionDelay(target)));
 	}
 	
+	/**
+	 * Acknowledges the signal to the peer. With ACK batching, an ACK to a peer without an open batch window
+	 * is sent right away and opens the window, further ACKs wait for the end of the window and go out in one batch.
+	 * @param peer, index of node
+	 * @param signal
+	 * @param processedAt
+	 */
+	protected void sendAck(int peer, NodeSignal signal, int processedAt) {
+		if(this.network.ackBatchWindow == 0 || !this.pendingAcksDue.containsKey(peer)) {
+			this.addPendingOutgoing(peer, new NodeSignalAck(this.getId(), signal), processedAt);
+			
+			if(this.network.ackBatchWindow > 0) {
+				this.openAckWindow(peer, processedAt);
+			}
+			
+			return;
+		}
+		
+		ArrayList<Hash256> acks = this.pendingAcks.computeIfAbsent(peer, key -> new ArrayList<>());
+		acks.add(signal.getHash());
+		
+		if(acks.size() >= NodeSignalAckBatch.LIMIT) {
+			this.sendAckBatch(peer, processedAt);
+		}
+	}
+	
+	/**
+	 * Sends batches of ACKs at the end of their windows, windows without ACKs are closed
+	 * @param networkTick
+	 */
+	protected void flushAcks(int networkTick) {
+		if(this.pendingAcksDue.size() == 0) {
+			return;
+		}
+		
+		for(int peer: this.pendingAcksDue.keys()) {
+			if(this.pendingAcksDue.get(peer, 0) <= networkTick) {
+				if(this.pendingAcks.containsKey(peer)) {
+					this.sendAckBatch(peer, networkTick);
+				} else {
+					this.pendingAcksDue.remove(peer);
+				}
+			}
+		}
+	}
+	
+	private void openAckWindow(int peer, int tick) {
+		// peers resend after 2.5 connection delays without a response, batched ACKs have to make it back in time
+		this.pendingAcksDue.put(peer, tick + Math.min(this.network.ackBatchWindow, this.getConnectionDelay(peer) / 4));
+	}
+	
+	private void sendAckBatch(int peer, int delay) {
+		ArrayList<Hash256> acks = this.pendingAcks.remove(peer);
+		
+		// a lone ACK is sent as a plain ACK, which is smaller than a batch
+		if(acks.size() == 1) {
+			this.addPendingOutgoing(peer, new NodeSignalAck(this.getId(), acks.get(0)), delay);
+		} else {
+			this.addPendingOutgoing(peer, new NodeSignalAckBatch(this.getId(), acks), delay);
+		}
+		
+		// ACKs keep coming, keep batching them
+		this.openAckWindow(peer, delay);
+	}
+	
 	protected void addPendingOutgoingToAll(NodeSignal signal, int delay) {
-		for(String nodeId: this.activeOutgoingConnections.keySet()) {
-			if(!signal.getOrigin().equals(nodeId)) {
-				this.addPendingOutgoing(nodeId, signal, delay);
+		int origin = this.network.getNodeIndex(signal.getOrigin());
+		
+		for(int node: this.activeOutgoingConnections.keys()) {
+			if(origin != node) {
+				this.addPendingOutgoing(node, signal, delay);
 			}
 		}
 	}
@@ -870,39 +1388,53 @@ public abstract class SimulatedNode {
 		this.addPendingOutgoingToAll(signal, delay);
 		
 		if(includeDownload) {
-			for(String nodeId: this.activeIncomingConnections.keySet()) {
-				if(!this.activeOutgoingConnections.containsKey(nodeId)) {
-					this.addPendingOutgoing(nodeId, signal, delay);
+			for(int node: this.activeIncomingConnections.keys()) {
+				if(!this.activeOutgoingConnections.containsKey(node)) {
+					this.addPendingOutgoing(node, signal, delay);
 				}
 			}
 		}
 	}
 	
-	public boolean establishUploadConnection(String caller, int connectionDelay) {
+	/**
+	 * @return boolean, true if another node could start downloading from this node
+	 */
+	public boolean hasFreeUploadSlot() {
+		return this.activeOutgoingConnections.size() < this.maxOutgoing;
+	}
+	
+	/**
+	 * @return boolean, true if another node could start uploading to this node
+	 */
+	public boolean hasFreeDownloadSlot() {
+		return this.activeIncomingConnections.size() < this.maxIncoming;
+	}
+	
+	public boolean establishUploadConnection(int caller, int connectionDelay) {
 		if(this.activeOutgoingConnections.containsKey(caller) || this.connectionCooldownAt.containsKey(caller)) {
 			return false;
 		} else {
-			if(this.activeOutgoingConnections.keySet().size() + 1 > this.maxOutgoing) {
+			if(this.activeOutgoingConnections.size() + 1 > this.maxOutgoing) {
 				return false;
 			} else {
 				this.activeOutgoingConnections.put(caller, connectionDelay);
 				this.lastActiveSignalReceived.put(caller, this.network.currentTick);
-				this.network.log.regular(this.getId(), "New UP connection to "+caller+", delay "+connectionDelay, this.network.getCurrentTick());
+				this.network.log.regular(this.getId(), "New UP connection to "+this.network.getNodeId(caller)+", delay "+connectionDelay, this.network.getCurrentTick());
 				return true;
 			}
 		}
 	}
 
-	public boolean establishDownloadConnection(String caller, int connectionDelay) {
+	public boolean establishDownloadConnection(int caller, int connectionDelay) {
 		if(this.activeIncomingConnections.containsKey(caller) || this.connectionCooldownAt.containsKey(caller)) {
 			return false;
 		} else {
-			if(this.activeIncomingConnections.keySet().size() + 1 > this.maxIncoming) {
+			if(this.activeIncomingConnections.size() + 1 > this.maxIncoming) {
 				return false;
 			} else {
 				this.activeIncomingConnections.put(caller, connectionDelay);
 				this.lastActiveSignalReceived.put(caller, this.network.currentTick);
-				this.network.log.regular(this.getId(), "New DOWN connection from "+caller+", delay "+connectionDelay, this.network.getCurrentTick());
+				this.network.log.regular(this.getId(), "New DOWN connection from "+this.network.getNodeId(caller)+", delay "+connectionDelay, this.network.getCurrentTick());
 				return true;
 			}
 		}
@@ -948,13 +1480,32 @@ public abstract class SimulatedNode {
 		this.signalRepetitionThreshold = nextInt;
 	}
 
-	public int getConnectionDelay(String node) {
+	/**
+	 * @param node, index of node
+	 * @return int, delay of an active connection to the node, or the network estimate
+	 */
+	public int getConnectionDelay(int node) {
 		if(this.activeIncomingConnections.containsKey(node)) {
-			return this.activeIncomingConnections.get(node);
+			return this.activeIncomingConnections.get(node, 0);
 		} else if(this.activeOutgoingConnections.containsKey(node)) {
-			return this.activeOutgoingConnections.get(node);
+			return this.activeOutgoingConnections.get(node, 0);
 		} else {
-			return this.network.getConnectionDelay(this.getId(), node);
+			return this.network.getConnectionDelay(this.index, node);
+		}
+	}
+	
+	/**
+	 * Renders NODE_KNOWLEDGE log message, a map of node ids to ticks of their last ACTIVE signal
+	 * @return String
+	 */
+	private String describeNodeKnowledge() {
+		// keys are put in the order they were learned, so the map prints the same as if it was kept by ids
+		HashMap<String, Integer> knowledge = new HashMap<>();
+		
+		for(int node: this.lastActiveSignalReceived.keys()) {
+			knowledge.put(this.network.getNodeId(node), this.lastActiveSignalReceived.get(node, 0));
 		}
+		
+		return knowledge.toString();
 	}
 }
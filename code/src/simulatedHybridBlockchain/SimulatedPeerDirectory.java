@@ -0,0 +1,125 @@
+package simulatedHybridBlockchain;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Directory of nodes with free connection slots, used to pick peers for new connections without
+ * shuffling the whole node list (see SimulatedNetwork.setPeerSampling).
+ *
+ * Membership is refreshed for a node whenever it finishes an execution, and for targets of connections
+ * established or closed by the network. A listed node may still refuse a connection (cooldown towards the caller,
+ * already connected, slot taken since the last refresh), so candidates are only a hint and are always confirmed
+ * by the node itself.
+ */
+public class SimulatedPeerDirectory {
+	// nodes that can accept a new DOWNLOAD connection, ie. targets for callers that want to upload
+	private NodeIndexSet freeDownloads = new NodeIndexSet();
+	
+	// nodes that can accept a new UPLOAD connection, ie. targets for callers that want to download
+	private NodeIndexSet freeUploads = new NodeIndexSet();
+	
+	public void update(SimulatedNode node) {
+		this.freeDownloads.set(node.getIndex(), node.hasFreeDownloadSlot());
+		this.freeUploads.set(node.getIndex(), node.hasFreeUploadSlot());
+	}
+	
+	/**
+	 * @param caller, index of node asking for a connection
+	 * @param rng, seeded RNG
+	 * @return Sampler, nodes that can accept a DOWNLOAD from the caller
+	 */
+	public Sampler sampleFreeDownloads(int caller, Random rng) {
+		return new Sampler(this.freeDownloads, caller, rng);
+	}
+	
+	/**
+	 * @param caller, index of node asking for a connection
+	 * @param rng, seeded RNG
+	 * @return Sampler, nodes that can accept an UPLOAD to the caller
+	 */
+	public Sampler sampleFreeUploads(int caller, Random rng) {
+		return new Sampler(this.freeUploads, caller, rng);
+	}
+	
+	/**
+	 * Draws members of a set in random order without repetition, each draw is O(1).
+	 * The set must not be changed while sampling.
+	 */
+	public static class Sampler {
+		private NodeIndexSet set;
+		private int caller;
+		private Random rng;
+		private int drawn = 0;
+		
+		private Sampler(NodeIndexSet set, int caller, Random rng) {
+			this.set = set;
+			this.caller = caller;
+			this.rng = rng;
+		}
+		
+		/**
+		 * @return int, index of next candidate | -1 if all members were drawn
+		 */
+		public int next() {
+			while(this.drawn < this.set.size) {
+				// partial Fisher-Yates shuffle of the member array
+				int pick = this.drawn + this.rng.nextInt(this.set.size - this.drawn);
+				this.set.swap(this.drawn, pick);
+				
+				int candidate = this.set.members[this.drawn++];
+				
+				if(candidate != this.caller) {
+					return candidate;
+				}
+			}
+			
+			return -1;
+		}
+	}
+	
+	/**
+	 * Set of node indexes with O(1) add, remove and access by position
+	 */
+	private static class NodeIndexSet {
+		private int[] members = new int[16];
+		private int size = 0;
+		
+		// position in members by node index, -1 if absent
+		private int[] positions = new int[0];
+		
+		private void set(int node, boolean present) {
+			if(node >= this.positions.length) {
+				int oldLength = this.positions.length;
+				this.positions = Arrays.copyOf(this.positions, Math.max(node + 1, oldLength * 2));
+				Arrays.fill(this.positions, oldLength, this.positions.length, -1);
+			}
+			
+			if(present && this.positions[node] == -1) {
+				if(this.size == this.members.length) {
+					this.members = Arrays.copyOf(this.members, this.size * 2);
+				}
+				
+				this.members[this.size] = node;
+				this.positions[node] = this.size++;
+			} else if(!present && this.positions[node] != -1) {
+				// move last member into the gap
+				int position = this.positions[node];
+				this.swap(position, this.size - 1);
+				
+				this.positions[node] = -1;
+				this.size--;
+			}
+		}
+		
+		private void swap(int a, int b) {
+			int nodeA = this.members[a];
+			int nodeB = this.members[b];
+			
+			this.members[a] = nodeB;
+			this.members[b] = nodeA;
+			this.positions[nodeB] = a;
+			this.positions[nodeA] = b;
+		}
+	}
+}
@@ -6,6 +6,9 @@ public class SimulatedSalesTransactionNode extends SimulatedNode {
 	private double chance = 0.1;
 	private String style = "xml";
 	
+	// shared RNG draw done before a parallel execution, negative if none
+	private double preparedDraw = -1;
+	
 	public SimulatedSalesTransactionNode(SimulatedNetwork network, String id) {
 		super(network, id);
 		
@@ -21,7 +24,7 @@ public class SimulatedSalesTransactionNode extends SimulatedNode {
 	@Override
 	protected int executeSpecificLogic(int networkTick) {
 		if(this.activeOutgoingConnections.size() > 0) {
-			if(this.network.rng.nextDouble() <= this.chance) {
+			if(this.nextDraw() <= this.chance) {
 				SalesTransaction trans = new SalesTransaction(this.getId(), networkTick);
 			
 				switch(this.style) {
@@ -42,6 +45,25 @@ public class SimulatedSalesTransactionNode extends SimulatedNode {
 		return this.network.nodeThreadDelay;
 	}
 	
+	@Override
+	public void prepareParallelExecution(int networkTick) {
+		// executeSpecificLogic draws only when there are outgoing connections
+		if(this.activeOutgoingConnections.size() > 0) {
+			this.preparedDraw = this.network.rng.nextDouble();
+		}
+	}
+	
+	private double nextDraw() {
+		if(this.preparedDraw >= 0) {
+			double draw = this.preparedDraw;
+			this.preparedDraw = -1;
+			
+			return draw;
+		}
+		
+		return this.network.rng.nextDouble();
+	}
+	
 	public void setStyle(String style) {
 		this.style = style;
 	}
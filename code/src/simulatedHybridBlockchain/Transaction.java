@@ -1,14 +1,13 @@
 package simulatedHybridBlockchain;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 public class Transaction {
 	protected String origin;
 	protected String payload;
 	
+	// memoized getHash(), cleared by every change of the transaction
+	private Hash256 hash = null;
+	
 	public Transaction(String origin, String payload) {
 		this.origin = origin;
 		this.payload = payload;
@@ -27,35 +26,36 @@ public class Transaction {
 		
 		this.origin = parts[0];
 		this.payload = parts[1];
+		this.hash = null;
+	}
+	
+	public String getOrigin() {
+		return this.origin;
 	}
 	
 	public String getPayload() {
 		return this.payload;
 	}
 	
+	protected void setPayload(String payload) {
+		this.payload = payload;
+		this.hash = null;
+	}
+	
 	@Override
 	public String toString() {
 		return this.origin+";"+this.payload;
 	}
 	
 	/**
-	 * Returns SHA256 hash of the transaction
-	 * @return String
+	 * Returns SHA256 hash of the transaction, computed once until the transaction changes
+	 * @return Hash256
 	 */
-	public String getHash() {
-		try {
-			MessageDigest hash = MessageDigest.getInstance("SHA-256");
-			
-			String block = this.toString();
-			hash.update(block.getBytes("UTF-8"));
-			
-			return String.format("%064x", new BigInteger(1, hash.digest()));
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		}		
+	public Hash256 getHash() {
+		if(this.hash == null) {
+			this.hash = Hash256.digest(this.toString());
+		}
 		
-		return null;
+		return this.hash;
 	}
 }
@@ -0,0 +1,109 @@
+package simulatedHybridBlockchain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Blocks received before they could be added to the chain (future, forked or out of turn blocks),
+ * indexed by hash, by previous block hash and by height.
+ * A block extending the tip is found by the tip hash, and blocks left behind by the chain are dropped by height,
+ * without going through all waiting blocks.
+ */
+public class WaitingBlockIndex {
+	private HashMap<Hash256, Block> blocks = new HashMap<>();
+	private HashMap<String, ArrayList<Block>> byPrevious = new HashMap<>();
+	private TreeMap<Integer, ArrayList<Block>> byHeight = new TreeMap<>();
+	
+	public WaitingBlockIndex() {
+	
+	}
+	
+	/**
+	 * @param block, ignored if already waiting
+	 */
+	public void add(Block block) {
+		if(this.blocks.putIfAbsent(block.getHash(), block) != null) {
+			return;
+		}
+		
+		this.byPrevious.computeIfAbsent(block.getPrevious(), previous -> new ArrayList<>(1)).add(block);
+		this.byHeight.computeIfAbsent(block.getHeight(), height -> new ArrayList<>(1)).add(block);
+	}
+	
+	/**
+	 * @param previous, hash of the block the waiting blocks follow
+	 * @return List<Block>, read-only waiting blocks following the block, in order they were added
+	 */
+	public List<Block> getByPrevious(String previous) {
+		ArrayList<Block> following = this.byPrevious.get(previous);
+		
+		return following != null ? Collections.unmodifiableList(following) : Collections.emptyList();
+	}
+	
+	/**
+	 * Removes waiting blocks following the block, ie. forks of a block accepted on top of it
+	 * @param previous
+	 * @return int, amount of removed blocks
+	 */
+	public int removeByPrevious(String previous) {
+		ArrayList<Block> following = this.byPrevious.remove(previous);
+		
+		if(following == null) {
+			return 0;
+		}
+		
+		for(Block block: following) {
+			this.blocks.remove(block.getHash());
+			this.removeFrom(this.byHeight, block.getHeight(), block);
+		}
+		
+		return following.size();
+	}
+	
+	/**
+	 * Removes waiting blocks below the height, they can no longer be added to the chain
+	 * @param height
+	 * @return int, amount of removed blocks
+	 */
+	public int removeBelow(int height) {
+		int removed = 0;
+		Iterator<Map.Entry<Integer, ArrayList<Block>>> lower = this.byHeight.headMap(height).entrySet().iterator();
+		
+		while(lower.hasNext()) {
+			for(Block block: lower.next().getValue()) {
+				this.blocks.remove(block.getHash());
+				this.removeFrom(this.byPrevious, block.getPrevious(), block);
+				removed++;
+			}
+			
+			lower.remove();
+		}
+		
+		return removed;
+	}
+	
+	public boolean contains(Hash256 hash) {
+		return this.blocks.containsKey(hash);
+	}
+	
+	public int size() {
+		return this.blocks.size();
+	}
+	
+	private <K> void removeFrom(Map<K, ArrayList<Block>> index, K key, Block block) {
+		ArrayList<Block> list = index.get(key);
+		
+		if(list != null) {
+			list.remove(block);
+			
+			if(list.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+}